@@ -23,10 +23,8 @@ import com.microchip.mplab.nbide.embedded.arduino.importer.LibCoreBuilder;
 import com.microchip.mplab.nbide.embedded.makeproject.MakeOptions;
 import com.microchip.mplab.nbide.embedded.makeproject.MakeProject;
 import java.awt.event.ActionEvent;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import org.openide.awt.ActionID;
@@ -100,12 +98,11 @@ public class RebuildCoreLibraryAction extends AbstractAction implements ContextA
                     GCCToolFinder toolFinder = new GCCToolFinder(toolchain);
                     Path coreDirPath = Paths.get(project.getProjectDirectory().getFileObject(ProjectImporter.CORE_DIRECTORY_NAME ).getPath() );            
                     Path makefilePath = coreDirPath.resolve( libCoreBuilder.getMakefileName() );
+                    // The library is rebuilt in place so that objects from previous builds are reused
                     libCoreBuilder.build( makefilePath, toolFinder, (m) -> {
                         io.getOut().println(m);
                     } );
                     // TODO: Move message strings to Bundle
-                    io.getOut().println("Copying Core Library file...");
-                    Files.copy( libCoreBuilder.getLibCorePath(), coreDirPath.resolve( LibCoreBuilder.LIB_CORE_FILENAME ), StandardCopyOption.REPLACE_EXISTING );
                     io.getOut().println("Done");
                 } catch (Exception ex) {
                     libCoreBuilder.cleanup();
@@ -19,25 +19,53 @@ import com.microchip.mplab.nbide.embedded.api.LanguageTool;
 import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public abstract class AbstractMakeAssistant {
 
     
+    public static final String OBJECT_DIRECTORY_NAME = "obj";
+    public static final String TOOLS_DIR_VARIABLE = "TOOLS_DIR";
+    
+    public static final int DEFAULT_UNITY_BATCH_COUNT = 4;
+    
+    private static final String DEPENDENCY_FILE_OPTION = "-MMD";
+    protected static final String UNITY_SOURCE_FILE_PREFIX = "unity-";
+    private static final Pattern COMMAND_TOKEN_PATTERN = Pattern.compile("\"([^\"]*)\"|(\\S+)");
     private static final Logger LOGGER = Logger.getLogger(AbstractMakeAssistant.class.getName());
 
     private List<String> compilationCommands;
     private List <String> makefileContents;
     private List <String> objectFilenames;
+    private int makeJobCount = Runtime.getRuntime().availableProcessors();
+    private List <Path> compiledSourceFilePaths;
+    private String includesSection;
+    private ObjectCache objectCache;
+    private int objectCacheHitCount;
+    private int objectCacheMissCount;
+    private boolean unityBuildEnabled;
+    private int unityBatchCount = DEFAULT_UNITY_BATCH_COUNT;
+    private Map <String,Set<String>> unityBuildDenylist = new HashMap<>();
+    private final Map <Path,List<String>> unitySourceContents = new HashMap<>();
     
     
     
@@ -53,10 +81,82 @@ public abstract class AbstractMakeAssistant {
         return objectFilenames;
     }
 
+    public int getMakeJobCount() {
+        return makeJobCount;
+    }
+
+    public void setMakeJobCount(int makeJobCount) {
+        if ( makeJobCount < 1 ) throw new IllegalArgumentException("makeJobCount must be greater than 0");
+        this.makeJobCount = makeJobCount;
+    }
+
+    public boolean isUnityBuildEnabled() {
+        return unityBuildEnabled;
+    }
+
+    /**
+     * @param unityBuildEnabled if true, the C and C++ sources are merged into a few batched translation units 
+     * per language so that the common headers are parsed only once per batch. Assembler sources and the files 
+     * on the denylist of the board are still compiled one by one.
+     */
+    public void setUnityBuildEnabled(boolean unityBuildEnabled) {
+        this.unityBuildEnabled = unityBuildEnabled;
+    }
+
+    public int getUnityBatchCount() {
+        return unityBatchCount;
+    }
+
+    public void setUnityBatchCount(int unityBatchCount) {
+        if ( unityBatchCount < 1 ) throw new IllegalArgumentException("unityBatchCount must be greater than 0");
+        this.unityBatchCount = unityBatchCount;
+    }
+
+    public Map<String, Set<String>> getUnityBuildDenylist() {
+        return unityBuildDenylist;
+    }
+
+    /**
+     * @param unityBuildDenylist the names of the source files that cannot be merged with other files, by board ID
+     */
+    public void setUnityBuildDenylist(Map<String, Set<String>> unityBuildDenylist) {
+        if ( unityBuildDenylist == null ) throw new IllegalArgumentException("unityBuildDenylist cannot be null");
+        this.unityBuildDenylist = unityBuildDenylist;
+    }
+
+    public ObjectCache getObjectCache() {
+        return objectCache;
+    }
+
+    /**
+     * @param objectCache a cache that missing object files are restored from before make is invoked, or null
+     */
+    public void setObjectCache(ObjectCache objectCache) {
+        this.objectCache = objectCache;
+    }
+
+    /**
+     * @return the number of object files restored from the object cache during the last build
+     */
+    public int getObjectCacheHitCount() {
+        return objectCacheHitCount;
+    }
+
+    /**
+     * @return the number of object files that were looked up in the object cache but had to be compiled during the last build
+     */
+    public int getObjectCacheMissCount() {
+        return objectCacheMissCount;
+    }
+
     public Path getMakefilePath() {
         return getBuildDirPath().resolve( getMakefileName() );
     }    
     
+    public Path getObjectDirPath() {
+        return getBuildDirPath().resolve( OBJECT_DIRECTORY_NAME );
+    }
+    
     public Path getToolchainPath() {
         return getToolFinder().findTool( LanguageTool.CCCompiler ).getParent().getParent();
     }
@@ -103,34 +203,90 @@ public abstract class AbstractMakeAssistant {
         
         makefileContents = new ArrayList<>();
         objectFilenames = new ArrayList<>();
-        makefileContents.add( getTargetName() + ":" );
+        compilationCommands = new ArrayList<>();
+        compiledSourceFilePaths = new ArrayList<>();
+        unitySourceContents.clear();
+        List <String> objectRules = new ArrayList<>();
         
         // Add variant and core source file paths:
-        List <Path> allSourceFiles = getSourceFilePaths(boardConfiguration);
+        List <Path> allSourceFiles = unityBuildEnabled 
+            ? createUnitySourceFiles( boardConfiguration, getSourceFilePaths(boardConfiguration) ) 
+            : getSourceFilePaths(boardConfiguration);
         
-        Map <String,String> runtimeData = new HashMap<>();
-        runtimeData.put( getToolsPathKey(), getToolchainPath().toString() );
+        Map <String,String> runtimeData = createRuntimeData();
+        includesSection = buildIncludesSection(boardConfiguration);
+        runtimeData.put("includes", includesSection );
+        
+        // The recipes are resolved once. Only the file names are filled in for each source file:
+        Map <String,RecipeTemplate> templates = new HashMap<>();
+        Map <String,String> fileData = new HashMap<>();
+        StringBuilder commandBuilder = new StringBuilder();
         
-        // Generete compilation commands:
+        // Generete one rule per object file so that make can compile them in parallel. 
+        // Objects are placed in a separate directory and depend on the source file, the headers 
+        // listed in the generated dependency file and the Makefile itself so that subsequent builds are incremental:
         allSourceFiles.forEach(sourceFilePath -> {                
             String sourceFileName = sourceFilePath.getFileName().toString();
-            String targetFileName = sourceFileName + ".o";
+            String targetFileName = OBJECT_DIRECTORY_NAME + "/" + sourceFileName + ".o";
+            // The generated unity sources are in the object directory:
+            String mappedSourceFilePath = unitySourceContents.containsKey(sourceFilePath) ? OBJECT_DIRECTORY_NAME + "/" + sourceFileName : mapSourceFilePath(sourceFilePath);
             objectFilenames.add( targetFileName );
-            StringBuilder command = new StringBuilder("\t");
+            // Mapped paths may be relative to the build directory:
+            compiledSourceFilePaths.add( getBuildDirPath().resolve(mappedSourceFilePath) );
             
-            runtimeData.put("source_file", mapSourceFilePath(sourceFilePath));
-            runtimeData.put("object_file", targetFileName);
-            runtimeData.put("includes", buildIncludesSection(boardConfiguration) );
+            fileData.put("source_file", mappedSourceFilePath);
+            fileData.put("object_file", targetFileName);
             
+            String recipeKey = null;
             if (sourceFileName.endsWith(".S")) {
-                command.append( boardConfiguration.getValue("recipe.S.o.pattern", runtimeData).get() );
+                recipeKey = "recipe.S.o.pattern";
             } else if (sourceFileName.endsWith(".c")) {
-                command.append( boardConfiguration.getValue("recipe.c.o.pattern", runtimeData).get() );
+                recipeKey = "recipe.c.o.pattern";
             } else if (sourceFileName.endsWith(".cpp")) {
-                command.append( boardConfiguration.getValue("recipe.cpp.o.pattern", runtimeData).get() );
+                recipeKey = "recipe.cpp.o.pattern";
             }
-            makefileContents.add( command.toString() );
-        });                
+            commandBuilder.setLength(0);
+            if ( recipeKey != null ) {
+                templates.computeIfAbsent( recipeKey, k -> boardConfiguration.getTemplate(k, runtimeData).get() ).render( commandBuilder, fileData );
+            }
+            if ( commandBuilder.indexOf(DEPENDENCY_FILE_OPTION) == -1 ) {
+                commandBuilder.append( " " ).append( DEPENDENCY_FILE_OPTION );
+            }
+            String command = commandBuilder.toString();
+            compilationCommands.add( command );
+            objectRules.add( "" );
+            objectRules.add( targetFileName + ": " + escapeMakefilePath(mappedSourceFilePath) + " " + getMakefileName() );
+            objectRules.add( "\t" + command );
+        });
+        
+        makefileContents.add( TOOLS_DIR_VARIABLE + "=" + getToolchainPath().toString() );
+        makefileContents.add( "" );
+        makefileContents.add( getTargetName() + ":" + objectFilenames.stream().map( n -> " \\\n\t" + n ).collect( Collectors.joining() ) );
+        generateTargetRecipe().forEach( line -> makefileContents.add( "\t" + line ) );
+        makefileContents.addAll( objectRules );
+        makefileContents.add( "" );
+        makefileContents.add( "-include $(wildcard " + OBJECT_DIRECTORY_NAME + "/*.d)" );
+    }
+    
+    /**
+     * @return runtime data that resolves the toolchain path to the TOOLS_DIR Makefile variable
+     * so that an existing Makefile can be pointed at a different toolchain
+     */
+    protected Map<String,String> createRuntimeData() {
+        Map <String,String> runtimeData = new HashMap<>();
+        runtimeData.put( getToolsPathKey(), "$(" + TOOLS_DIR_VARIABLE + ")" );
+        return runtimeData;
+    }
+    
+    /**
+     * @return the commands that create the target out of the object files
+     */
+    protected List<String> generateTargetRecipe() {
+        return new ArrayList<>();
+    }
+    
+    protected String escapeMakefilePath( String path ) {
+        return path.replace(" ", "\\ ");
     }
     
     protected String mapSourceFilePath( Path sourceFilePath ) {
@@ -150,24 +306,49 @@ public abstract class AbstractMakeAssistant {
     
     protected String buildIncludesSection( BoardConfiguration boardConfiguration ) {
         StringBuilder ret = new StringBuilder();
+        getIncludeDirPaths(boardConfiguration).forEach( p -> ret.append(" \"-I").append(p).append("\"") );
+        return ret.toString();
+    }
+    
+    protected List<Path> getIncludeDirPaths( BoardConfiguration boardConfiguration ) {
+        List <Path> ret = new ArrayList<>();
         Path variantPath = boardConfiguration.getVariantPath();
         Path corePath = boardConfiguration.getCoreDirectoryPath();
         if (variantPath != null && !variantPath.equals(corePath)) {
-            ret.append(" \"-I").append(variantPath).append("\"");
+            ret.add(variantPath);
         }
-        ret.append(" \"-I").append(corePath).append("\"");
-        return ret.toString();
+        ret.add(corePath);
+        return ret;
     }
     
     protected void writeMakefile() throws IOException {
         Files.write( getMakefilePath(), getMakefileContents() );
+        if ( !unitySourceContents.isEmpty() ) {
+            Files.createDirectories( getObjectDirPath() );
+        }
+        for ( Map.Entry<Path,List<String>> e : unitySourceContents.entrySet() ) {
+            // Rewriting an unchanged file would make make recompile the whole batch:
+            if ( !Files.exists(e.getKey()) || !Files.readAllLines(e.getKey()).equals(e.getValue()) ) {
+                Files.write( e.getKey(), e.getValue() );
+            }
+        }
+    }
+    
+    /**
+     * @return true if the last generated Makefile compiles merged translation units
+     */
+    protected boolean hasUnitySourceFiles() {
+        return !unitySourceContents.isEmpty();
     }
     
     protected void invokeMakeTool( Consumer<String> messageConsumer, Consumer<String> errorConsumer ) throws IOException, InterruptedException {
+        Files.createDirectories( getObjectDirPath() );
+        Map <Path,String> objectFilePathsToCacheKeys = restoreCachedObjects();
         Path makeToolPath = getToolFinder().findTool( LanguageTool.MakeTool );
         NativeProcessRunner nativeProcessRunner = new NativeProcessRunner(messageConsumer, errorConsumer);
-        int result = nativeProcessRunner.runNativeProcess( getBuildDirPath(), makeToolPath.toString(), "V=1", "-f", getMakefilePath().getFileName().toString() );
+        int result = nativeProcessRunner.runNativeProcess( getBuildDirPath(), makeToolPath.toString(), "V=1", "-j" + makeJobCount, "-f", getMakefilePath().getFileName().toString() );
         if ( result != 0 ) throw new NativeProcessFailureException( "Compilation failed!" );
+        storeCompiledObjects( objectFilePathsToCacheKeys );
     }
         
     protected List<Path> getSourceFilePaths( BoardConfiguration boardConfiguration ) throws IOException {
@@ -177,5 +358,225 @@ public abstract class AbstractMakeAssistant {
     protected List<String> parseCompilerMacros(String macros) {
         return Arrays.asList(macros.split(";")).stream().map(m -> "-D" + m).collect(Collectors.toList());
     }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    // Replaces the mergeable C and C++ sources with generated files that include them
+    private List <Path> createUnitySourceFiles( BoardConfiguration boardConfiguration, List<Path> sourceFilePaths ) {
+        Set <String> excludedFileNames = unityBuildDenylist.getOrDefault( boardConfiguration.getBoardId(), Collections.emptySet() );
+        Map <String,List<Path>> extensionsToSourceFilePaths = new TreeMap<>();
+        List <Path> ret = new ArrayList<>();
+        for ( Path sourceFilePath : sourceFilePaths ) {
+            String sourceFileName = sourceFilePath.getFileName().toString();
+            if ( !excludedFileNames.contains(sourceFileName) && (sourceFileName.endsWith(".c") || sourceFileName.endsWith(".cpp")) ) {
+                String extension = sourceFileName.substring( sourceFileName.lastIndexOf('.') + 1 );
+                extensionsToSourceFilePaths.computeIfAbsent( extension, e -> new ArrayList<>() ).add( sourceFilePath );
+            } else {
+                ret.add( sourceFilePath );
+            }
+        }
+        
+        extensionsToSourceFilePaths.forEach( (extension, paths) -> {
+            if ( paths.size() < 2 ) {
+                ret.addAll( paths );
+                return;
+            }
+            // Keep the batches stable so that adding a file does not invalidate all of them:
+            paths.sort( Comparator.comparing( p -> p.getFileName().toString() ) );
+            int batchCount = Math.min( unityBatchCount, paths.size() );
+            int batchSize = (paths.size() + batchCount - 1) / batchCount;
+            for ( int i=0, batch=1; i<paths.size(); i+=batchSize, batch++ ) {
+                Path unitySourceFilePath = getObjectDirPath().resolve( UNITY_SOURCE_FILE_PREFIX + batch + "." + extension ).toAbsolutePath();
+                List <String> lines = paths.subList( i, Math.min( i + batchSize, paths.size() ) ).stream()
+                    .map( p -> "#include \"" + toUnityIncludePath( mapSourceFilePath(p) ) + "\"" )
+                    .collect( Collectors.toList() );
+                unitySourceContents.put( unitySourceFilePath, lines );
+                ret.add( unitySourceFilePath );
+            }
+        });
+        return ret;
+    }
+    
+    // The unity sources are in the object directory, so paths relative to the build directory go one level up
+    private static String toUnityIncludePath( String mappedSourceFilePath ) {
+        String path = mappedSourceFilePath.replace('\\', '/');
+        return Paths.get(mappedSourceFilePath).isAbsolute() ? path : "../" + path;
+    }
+    
+    // Restores the missing objects that are in the cache and returns the cache keys of the ones that are not
+    private Map <Path,String> restoreCachedObjects() throws IOException {
+        Map <Path,String> ret = new HashMap<>();
+        objectCacheHitCount = 0;
+        objectCacheMissCount = 0;
+        // The commands are only known if the Makefile has been generated:
+        if ( objectCache == null || compilationCommands == null ) {
+            return ret;
+        }
+        
+        Path compilerPath = getToolFinder().findTool( LanguageTool.CCCompiler );
+        List <Path> includeDirPaths = getIncludeDirPaths( getBoardConfiguration() );
+        // A file is only cached if all of its includes can be resolved, so the scanners also search the directories 
+        // added by the recipe and the ones built into the compiler. These differ by language:
+        Map <String,IncludeScanner> includeScanners = new HashMap<>();
+        for ( int i=0; i<objectFilenames.size(); i++ ) {
+            Path objectFilePath = getBuildDirPath().resolve( objectFilenames.get(i) );
+            if ( Files.exists(objectFilePath) ) {
+                // Make decides whether an existing object is up to date
+                continue;
+            }
+            Path sourceFilePath = compiledSourceFilePaths.get(i);
+            List <String> commandTokens = tokenizeCommand( compilationCommands.get(i) );
+            IncludeScanner includeScanner = includeScanners.computeIfAbsent( 
+                getLanguage(sourceFilePath), language -> createIncludeScanner( language, commandTokens, includeDirPaths ) 
+            );
+            Optional <List<Path>> dependencyPaths = includeScanner.scan( sourceFilePath );
+            if ( !dependencyPaths.isPresent() ) {
+                objectCacheMissCount++;
+                continue;
+            }
+            String key;
+            if ( generatesDebugInformation(commandTokens) ) {
+                // Like ccache's "hash_dir": the debug information contains the compilation directory and the paths 
+                // of the source file and the headers, so the object can only be reused at the same location
+                String command = compilationCommands.get(i) + "\n" + getBuildDirPath().toAbsolutePath().normalize();
+                key = objectCache.createKey( command, compilerPath, sourceFilePath, dependencyPaths.get(), true );
+            } else {
+                // Leave out the project specific paths so that the same core compiled for another project gives the same key:
+                String command = compilationCommands.get(i)
+                    .replace( sourceFilePath.toString(), "{source_file}" )
+                    .replace( includesSection, "{includes}" );
+                key = objectCache.createKey( command, compilerPath, sourceFilePath, dependencyPaths.get(), false );
+            }
+            if ( objectCache.restore( key, objectFilePath ) ) {
+                writeDependencyFile( objectFilenames.get(i), sourceFilePath, dependencyPaths.get() );
+                objectCacheHitCount++;
+            } else {
+                objectCacheMissCount++;
+                ret.put( objectFilePath, key );
+            }
+        }
+        LOGGER.log( Level.INFO, "Object cache: {0} hits, {1} misses", new Object[] {objectCacheHitCount, objectCacheMissCount} );
+        return ret;
+    }
+    
+    private IncludeScanner createIncludeScanner( String language, List<String> commandTokens, List<Path> includeDirPaths ) {
+        // Same search order as the compiler: the directories given in the command, then the built-in ones
+        Set <Path> dirPaths = new LinkedHashSet<>();
+        for ( int i=1; i<commandTokens.size(); i++ ) {
+            String token = commandTokens.get(i);
+            String dirPath = null;
+            if ( token.startsWith("-I") && token.length() > 2 ) {
+                dirPath = token.substring(2);
+            } else if ( token.startsWith("-isystem") ) {
+                dirPath = token.length() > 8 ? token.substring(8) : (i+1 < commandTokens.size() ? commandTokens.get(++i) : null);
+            }
+            if ( dirPath != null ) {
+                try {
+                    dirPaths.add( getBuildDirPath().resolve( dirPath ).toAbsolutePath().normalize() );
+                } catch ( InvalidPathException ex ) {
+                    LOGGER.log( Level.FINE, "Ignoring include option: {0}", token );
+                }
+            }
+        }
+        includeDirPaths.forEach( p -> dirPaths.add( p.toAbsolutePath().normalize() ) );
+        List <Path> systemDirPaths = commandTokens.isEmpty() ? new ArrayList<>() : findSystemIncludeDirPaths( commandTokens.get(0), language );
+        dirPaths.removeAll( systemDirPaths );
+        List <Path> ret = new ArrayList<>(dirPaths);
+        return new IncludeScanner( ret, ret, systemDirPaths );
+    }
+    
+    // Asks the compiler for its search list by preprocessing an empty file
+    private List<Path> findSystemIncludeDirPaths( String compilerPath, String language ) {
+        List <Path> ret = new ArrayList<>();
+        Path emptyFilePath = null;
+        try {
+            emptyFilePath = Files.createTempFile("empty", ".h");
+            boolean[] inSearchList = { false };
+            int result = new NativeProcessRunner( line -> {
+                if ( line.startsWith("#include ") && line.contains("search starts here") ) {
+                    inSearchList[0] = true;
+                } else if ( line.startsWith("End of search list") ) {
+                    inSearchList[0] = false;
+                } else if ( inSearchList[0] && line.startsWith(" ") ) {
+                    ret.add( Paths.get( line.trim() ).toAbsolutePath().normalize() );
+                }
+            }).runNativeProcess( compilerPath, "-x", language, "-E", "-v", emptyFilePath.toString() );
+            if ( result != 0 ) {
+                LOGGER.log( Level.WARNING, "Failed to find the system include directories of {0}", compilerPath );
+            }
+        } catch ( IOException | InterruptedException | InvalidPathException ex ) {
+            LOGGER.log( Level.WARNING, "Failed to find the system include directories of " + compilerPath, ex );
+        } finally {
+            if ( emptyFilePath != null ) {
+                try {
+                    Files.deleteIfExists( emptyFilePath );
+                } catch (IOException ex) {
+                    LOGGER.log( Level.FINE, "Failed to delete " + emptyFilePath, ex );
+                }
+            }
+        }
+        return ret;
+    }
+    
+    // Splits a command into its arguments. The tools directory variable is replaced by its value.
+    private List<String> tokenizeCommand( String command ) {
+        List <String> ret = new ArrayList<>();
+        Matcher m = COMMAND_TOKEN_PATTERN.matcher( command.replace( "$(" + TOOLS_DIR_VARIABLE + ")", getToolchainPath().toString() ) );
+        while ( m.find() ) {
+            ret.add( m.group(1) != null ? m.group(1) : m.group(2) );
+        }
+        return ret;
+    }
+    
+    // The last "-g" option wins, "-g0" turns off the debug information
+    private static boolean generatesDebugInformation( List<String> commandTokens ) {
+        boolean ret = false;
+        for ( String token : commandTokens ) {
+            if ( token.startsWith("-g") && !token.startsWith("-gno-") ) {
+                ret = !token.equals("-g0");
+            }
+        }
+        return ret;
+    }
+    
+    private static String getLanguage( Path sourceFilePath ) {
+        String sourceFileName = sourceFilePath.getFileName().toString();
+        if ( sourceFileName.endsWith(".S") ) {
+            return "assembler-with-cpp";
+        } else if ( sourceFileName.endsWith(".c") ) {
+            return "c";
+        } else {
+            return "c++";
+        }
+    }
+    
+    private void storeCompiledObjects( Map<Path,String> objectFilePathsToCacheKeys ) {
+        if ( objectCache == null || objectFilePathsToCacheKeys.isEmpty() ) {
+            return;
+        }
+        objectFilePathsToCacheKeys.forEach( (objectFilePath, key) -> {
+            if ( Files.exists(objectFilePath) ) {
+                objectCache.store( key, objectFilePath );
+            }
+        });
+        try {
+            objectCache.trim();
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to trim the object cache", ex );
+        }
+    }
+    
+    // Written in place of the file the compiler would have generated with -MMD so that later builds stay incremental
+    private void writeDependencyFile( String objectFilename, Path sourceFilePath, List<Path> dependencyPaths ) throws IOException {
+        String baseName = objectFilename.substring( 0, objectFilename.length() - ".o".length() );
+        List <String> lines = new ArrayList<>();
+        lines.add( objectFilename + ": " + escapeMakefilePath( sourceFilePath.toString() ) + (dependencyPaths.isEmpty() ? "" : " \\") );
+        for ( int i=0; i<dependencyPaths.size(); i++ ) {
+            lines.add( " " + escapeMakefilePath( dependencyPaths.get(i).toString() ) + (i < dependencyPaths.size()-1 ? " \\" : "") );
+        }
+        Files.write( getBuildDirPath().resolve( baseName + ".d" ), lines );
+    }
 
 }
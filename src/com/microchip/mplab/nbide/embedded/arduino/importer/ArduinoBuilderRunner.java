@@ -16,12 +16,12 @@
 package com.microchip.mplab.nbide.embedded.arduino.importer;
 
 import com.microchip.mplab.nbide.embedded.api.LanguageTool;
+import com.microchip.mplab.nbide.embedded.arduino.utils.ContentHasher;
 import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
 import static com.microchip.mplab.nbide.embedded.arduino.importer.NativeProcessRunner.NO_ERROR_CODE;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitResult;
 import static java.nio.file.FileVisitResult.CONTINUE;
@@ -32,19 +32,38 @@ import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.script.ScriptEngine;
-import javax.script.ScriptEngineManager;
-import javax.script.ScriptException;
-import jdk.nashorn.api.scripting.ScriptObjectMirror;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ArduinoBuilderRunner {
 
     
+    /**
+     * Determines how header dependencies of library source files are found.
+     */
+    public static enum DependencyResolutionMode {
+        /** Run "gcc -MM" for every library source file */
+        COMPILER,
+        /** Use the in-process {@link IncludeScanner} and fall back to the compiler when its result is uncertain */
+        INCLUDE_SCANNER
+    }
+    
     private static final Logger LOGGER = Logger.getLogger(ArduinoBuilderRunner.class.getName());
+    private static final PathMatcher SKETCH_FILE_MATCHER = FileSystems.getDefault().getPathMatcher("glob:*.{ino,pde,c,cpp,h,hpp,S}");
     
     private List<Path> mainLibraryPaths = new ArrayList<>();
     private List<Path> auxLibraryPaths = new ArrayList<>();
@@ -54,6 +73,12 @@ public class ArduinoBuilderRunner {
     private final ArduinoConfig arduinoConfig;
     private final Path arduinoInstallPath;
     private final NativeProcessRunner nativeProcessRunner;
+    private int dependencyResolutionThreadCount = Runtime.getRuntime().availableProcessors();
+    private DependencyCache dependencyCache;
+    private DependencyResolutionMode dependencyResolutionMode = DependencyResolutionMode.COMPILER;
+    private LibraryIndex libraryIndex;
+    private PreprocessCache preprocessCache;
+    private List<String> arduinoBuilderCommand;
     
 
     public ArduinoBuilderRunner( GCCToolFinder toolFinder, ArduinoConfig arduinoConfig, Path arduinoInstallPath, Consumer<String> nativeProcessMessageConsumer ) {
@@ -75,6 +100,52 @@ public class ArduinoBuilderRunner {
         return toolFinder;
     }
 
+    public int getDependencyResolutionThreadCount() {
+        return dependencyResolutionThreadCount;
+    }
+
+    public void setDependencyResolutionThreadCount(int dependencyResolutionThreadCount) {
+        if ( dependencyResolutionThreadCount < 1 ) throw new IllegalArgumentException("dependencyResolutionThreadCount must be greater than 0");
+        this.dependencyResolutionThreadCount = dependencyResolutionThreadCount;
+    }
+
+    public DependencyCache getDependencyCache() {
+        return dependencyCache;
+    }
+
+    public void setDependencyCache(DependencyCache dependencyCache) {
+        this.dependencyCache = dependencyCache;
+    }
+
+    public DependencyResolutionMode getDependencyResolutionMode() {
+        return dependencyResolutionMode;
+    }
+
+    public void setDependencyResolutionMode(DependencyResolutionMode dependencyResolutionMode) {
+        if ( dependencyResolutionMode == null ) throw new IllegalArgumentException("dependencyResolutionMode cannot be null");
+        this.dependencyResolutionMode = dependencyResolutionMode;
+    }
+
+    public LibraryIndex getLibraryIndex() {
+        return libraryIndex;
+    }
+
+    /**
+     * @param libraryIndex an index used to map headers and dependency files to libraries. It is refreshed 
+     * with the built-in, platform and sketchbook libraries directories on every call to preprocess().
+     */
+    public void setLibraryIndex(LibraryIndex libraryIndex) {
+        this.libraryIndex = libraryIndex;
+    }
+
+    public PreprocessCache getPreprocessCache() {
+        return preprocessCache;
+    }
+
+    public void setPreprocessCache(PreprocessCache preprocessCache) {
+        this.preprocessCache = preprocessCache;
+    }
+
     public void preprocess(BoardConfiguration boardConfiguration, Path inoFilePath) {
         Path tempDirPath = null;
         try {
@@ -92,10 +163,14 @@ public class ArduinoBuilderRunner {
                 Files.createDirectories(preprocessDirPath);
             }
             
-            // Run Arduino-Builder
+            // Run Arduino-Builder or restore its output from the cache
+            arduinoBuilderCommand = createArduinoBuilderCommand(boardConfiguration, inoFilePath);
             int errorCode = runArduinoBuilder(boardConfiguration, inoFilePath);
 
             if (errorCode == NO_ERROR_CODE) {
+                if ( libraryIndex != null ) {
+                    refreshLibraryIndex(boardConfiguration, inoFilePath);
+                }
                 // Find library paths
                 mainLibraryPaths = findMainLibraryPaths();
                 // Find library dependencies
@@ -106,7 +181,7 @@ public class ArduinoBuilderRunner {
                 throw new RuntimeException(message);
             }
 
-        } catch (IOException | InterruptedException | RuntimeException | ScriptException ex) {
+        } catch (IOException | InterruptedException | RuntimeException ex) {
             throw new RuntimeException(ex);
         }
     }
@@ -126,7 +201,7 @@ public class ArduinoBuilderRunner {
     }
 
     public String getCommand() {
-        return nativeProcessRunner.getNativeProcessCommandString();
+        return NativeProcessRunner.createCommandString( arduinoBuilderCommand );
     }
 
     public Path getPreprocessDirPath() {
@@ -144,17 +219,16 @@ public class ArduinoBuilderRunner {
     }
 
     // TODO: Improve handling of non-standard scenarios (missing directories etc)
-    private int runArduinoBuilder( BoardConfiguration boardConfiguration, Path inoFilePath ) throws IOException, InterruptedException {
+    private List <String> createArduinoBuilderCommand( BoardConfiguration boardConfiguration, Path inoFilePath ) {
         final Path packagesPath = arduinoConfig.getPackagesPath();
         final Path hardwarePath = arduinoConfig.findHardwarePath().get();
         final boolean packagesDirExists = Files.exists(packagesPath);
         final String fqbn = boardConfiguration.getFqbn();
         final Path librariesDirPath = findSketchbookLibrariesDirectoryPath(arduinoConfig, inoFilePath);        
         
-        // Run preprocess command        
+        // Preprocess command
         if ( packagesDirExists ) {
-            return nativeProcessRunner.runNativeProcess(
-                preprocessDirPath,
+            return Arrays.asList(
                 arduinoConfig.findArduinoBuilderPath(arduinoInstallPath).toString(),
                 "-preprocess",
                 "-logger=human",
@@ -171,8 +245,7 @@ public class ArduinoBuilderRunner {
                 inoFilePath.toAbsolutePath().toString()
             );
         } else {
-            return nativeProcessRunner.runNativeProcess(
-                preprocessDirPath,
+            return Arrays.asList(
                 arduinoConfig.findArduinoBuilderPath(arduinoInstallPath).toString(),
                 "-preprocess",
                 "-logger=human",
@@ -189,6 +262,74 @@ public class ArduinoBuilderRunner {
         }
     }
     
+    private int runArduinoBuilder( BoardConfiguration boardConfiguration, Path inoFilePath ) throws IOException, InterruptedException {
+        String cacheKey = null;
+        if ( preprocessCache != null ) {
+            try {
+                cacheKey = createPreprocessCacheKey( boardConfiguration, inoFilePath, arduinoBuilderCommand );
+                if ( preprocessCache.restore( cacheKey, preprocessDirPath ) ) {
+                    return NO_ERROR_CODE;
+                }
+            } catch (IOException ex) {
+                LOGGER.log( Level.WARNING, "Failed to look up the preprocess cache for " + inoFilePath, ex );
+            }
+        }
+        
+        int errorCode = nativeProcessRunner.runNativeProcess( preprocessDirPath, arduinoBuilderCommand );
+        if ( errorCode == NO_ERROR_CODE && cacheKey != null ) {
+            preprocessCache.store( cacheKey, preprocessDirPath );
+        }
+        return errorCode;
+    }
+    
+    // The command contains the FQBN, the hardware, tools and libraries directories and the sketch location
+    private String createPreprocessCacheKey( BoardConfiguration boardConfiguration, Path inoFilePath, List<String> command ) throws IOException {
+        ContentHasher hasher = new ContentHasher();
+        command.forEach( hasher::update );
+        hasher.updateFileIdentity( Paths.get( command.get(0) ) );
+        
+        Platform platform = boardConfiguration.getPlatform();
+        hasher.updateFileIdentity( platform.getPlatformFilePath() );
+        hasher.updateFileIdentity( platform.getBoardsFilePath() );
+        
+        Path sketchDirPath = inoFilePath.toAbsolutePath().getParent();
+        List <Path> sketchFilePaths;
+        try (Stream<Path> stream = Files.walk(sketchDirPath)) {
+            sketchFilePaths = stream.filter( p -> SKETCH_FILE_MATCHER.matches( p.getFileName() ) ).sorted().collect( Collectors.toList() );
+        }
+        for ( Path sketchFilePath : sketchFilePaths ) {
+            hasher.update( sketchDirPath.relativize(sketchFilePath).toString() ).updateFileContents( sketchFilePath );
+        }
+        
+        // Libraries are identified by the modification times of their directories which change when files are added or removed:
+        List <Path> librariesDirPaths = Arrays.asList(
+            arduinoConfig.findBuiltInLibrariesPath(arduinoInstallPath),
+            platform.getRootPath().resolve("libraries"),
+            findSketchbookLibrariesDirectoryPath(arduinoConfig, inoFilePath)
+        );
+        for ( Path librariesDirPath : librariesDirPaths ) {
+            if ( !Files.isDirectory(librariesDirPath) ) continue;
+            List <Path> libraryPaths;
+            try (Stream<Path> stream = Files.list(librariesDirPath)) {
+                libraryPaths = stream.sorted().collect( Collectors.toList() );
+            }
+            for ( Path libraryPath : libraryPaths ) {
+                hasher.update( libraryPath.toString() );
+                hasher.updateFileIdentity( libraryPath );
+                hasher.updateFileIdentity( libraryPath.resolve("src") );
+            }
+        }
+        return hasher.toHexString();
+    }
+    
+    private void refreshLibraryIndex( BoardConfiguration boardConfiguration, Path inoFilePath ) {
+        Map <LibraryIndex.Location,Path> librariesDirPaths = new EnumMap<>(LibraryIndex.Location.class);
+        librariesDirPaths.put( LibraryIndex.Location.BUILT_IN, arduinoConfig.findBuiltInLibrariesPath(arduinoInstallPath) );
+        librariesDirPaths.put( LibraryIndex.Location.PLATFORM, boardConfiguration.getPlatform().getRootPath().resolve("libraries") );
+        librariesDirPaths.put( LibraryIndex.Location.SKETCHBOOK, findSketchbookLibrariesDirectoryPath(arduinoConfig, inoFilePath) );
+        libraryIndex.refresh( librariesDirPaths );
+    }
+    
     private Path findSketchbookLibrariesDirectoryPath( ArduinoConfig arduinoConfig, Path inoFilePath ) {
         Path sketchbookDirPath = inoFilePath.getParent().getParent();
         Path librariesDirPath = sketchbookDirPath.resolve("libraries");
@@ -199,20 +340,17 @@ public class ArduinoBuilderRunner {
         }
     }
 
-    private List<Path> findMainLibraryPaths() throws ScriptException, FileNotFoundException {
+    private List<Path> findMainLibraryPaths() throws IOException {
         LOGGER.info("Looking for main library paths");
         
         Path includesCachePath = Paths.get(preprocessDirPath.toAbsolutePath().toString(), "includes.cache");
-        ScriptEngine scriptEngine = new ScriptEngineManager().getEngineByExtension("js");
-        ScriptObjectMirror mirror = (ScriptObjectMirror) scriptEngine.eval(new FileReader(includesCachePath.toString()));
         List<Path> libraryPaths = new ArrayList<>();
-        mirror.entrySet().forEach(e -> {
-            if (e.getValue() instanceof ScriptObjectMirror) {
-                ScriptObjectMirror m = (ScriptObjectMirror) e.getValue();
-                Object sourceFile = m.get("Sourcefile");
-                if (sourceFile != null && !sourceFile.toString().trim().isEmpty()) {
-                    String entry = m.get("Includepath").toString();
-                    if ( !entry.trim().isEmpty() ) {
+        try ( IncludesCacheReader reader = new IncludesCacheReader( Files.newBufferedReader(includesCachePath, StandardCharsets.UTF_8) ) ) {
+            while ( reader.next() ) {
+                String sourceFile = reader.getSourcefile();
+                if (sourceFile != null && !sourceFile.trim().isEmpty()) {
+                    String entry = reader.getIncludepath();
+                    if ( entry != null && !entry.trim().isEmpty() ) {
                         if ( entry.endsWith( File.separator+"src") ) {
                             entry = entry.substring(0, entry.length()-4);
                         }
@@ -221,7 +359,7 @@ public class ArduinoBuilderRunner {
                     }
                 }
             }
-        });
+        }
         
         if ( libraryPaths.isEmpty() ) {
             LOGGER.info("No main library dependencies found");
@@ -230,65 +368,56 @@ public class ArduinoBuilderRunner {
         return libraryPaths;
     }
 
-    private List <Path> findAuxLibraryPaths(BoardConfiguration boardConfiguration, GCCToolFinder toolFinder, List<Path> mainLibraries) throws IOException {
+    // Package-private so that the serial and the parallel resolution can be compared by the unit tests
+    List <Path> findAuxLibraryPaths(BoardConfiguration boardConfiguration, GCCToolFinder toolFinder, List<Path> mainLibraries) throws IOException, InterruptedException {
         LOGGER.info("Looking for additional library paths");
         
         // TODO: Consider expanding the list of valid library source file extensions
         final PathMatcher librarySourceMatcher = FileSystems.getDefault().getPathMatcher("glob:*.{c,cpp}");
         final Path gccPath = toolFinder.findTool( LanguageTool.CCCompiler );
         final List <Path> coreDirPaths = boardConfiguration.getCoreDirPaths();
+        final List <Path> includeDirPaths = createIncludeDirPaths( coreDirPaths, mainLibraries );
+        final String architecture = boardConfiguration.getPlatform().getArchitecture();
+        final IncludeScanner includeScanner = (dependencyResolutionMode == DependencyResolutionMode.INCLUDE_SCANNER) ? new IncludeScanner( coreDirPaths, includeDirPaths, libraryIndex, architecture ) : null;
         
-        final List <Path> allLibraries = new ArrayList<>(mainLibraries);
+        final Set <Path> allLibraries = new HashSet<>(mainLibraries);
         final List <Path> ret = new ArrayList<>();
-
-        for (int i = 0; i < allLibraries.size(); i++) {
-            Path libDir = allLibraries.get(i);
-            final Path librariesDir = libDir.getParent();
-            Files.walkFileTree(libDir, new SimpleFileVisitor<Path>() {
-                @Override
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                    if (Files.isDirectory(file)) {
-                        return CONTINUE;
-                    }
-                    if (!librarySourceMatcher.matches(file.getFileName())) {
-                        return CONTINUE;
+        
+        // Libraries are processed in waves: all source files of the current wave are resolved in parallel 
+        // and the results are merged in submission order so that the outcome does not depend on thread scheduling
+        final ExecutorService executor = Executors.newFixedThreadPool( dependencyResolutionThreadCount );
+        try {
+            List <Path> currentLibraries = new ArrayList<>(mainLibraries);
+            while ( !currentLibraries.isEmpty() ) {
+                List <Future<List<Path>>> results = new ArrayList<>();
+                for ( Path libDir : currentLibraries ) {
+                    final Path librariesDir = libDir.getParent();
+                    for ( Path file : findLibrarySourceFiles( libDir, librarySourceMatcher ) ) {
+                        final String[] command = createDependencyResolutionCommand( gccPath, includeDirPaths, file );
+                        results.add( executor.submit( () -> resolveLibraryDependencies( librariesDir, file, command, includeScanner ) ) );
                     }
-
-                    try {
-                        new NativeProcessRunner( (String m) -> {
-                            if ( m.startsWith("--") ) {
-                                LOGGER.info(m);
-                            } else if (m.startsWith(" ")) {
-                                String path = m.trim();
-                                if ( path.endsWith("\\") ) {
-                                    path = path.substring(0, path.length()-2).trim();
-                                }
-                                Path dependencyFilePath = Paths.get( path );
-                                // TODO: If the "path" string does not represent a path then it probably contains error information. Find a way to handle it.
-                                if ( Files.exists( dependencyFilePath ) ) {
-                                    LOGGER.log(Level.INFO, "Dependency path: {0}", dependencyFilePath);
-                                    if ( dependencyFilePath.startsWith( librariesDir ) ) {
-                                        Path relativeDependencyPath = librariesDir.relativize(dependencyFilePath.normalize());
-                                        String libraryName = relativeDependencyPath.getName(0).toString();
-                                        Path libraryPath = librariesDir.resolve(libraryName);
-                                        if ( !allLibraries.contains(libraryPath) ) {
-                                            LOGGER.log(Level.INFO, "Found library path: {0}", libraryPath);
-                                            allLibraries.add(libraryPath);
-                                            ret.add(libraryPath);
-                                        }
-                                    } else {
-                                        LOGGER.log(Level.INFO, "Ignoring dependency file path:{0}", dependencyFilePath);
-                                    }
-                                }
-                            }
-                        }).runNativeProcess( createDependencyResolutionCommand( gccPath, coreDirPaths, mainLibraries, file ) );
-                    } catch ( IOException | InterruptedException ex ) {
-                        LOGGER.log( Level.SEVERE, "Failed to resolve additional dependencies for " + file.toAbsolutePath().toString(), ex );
+                }
+                
+                List <Path> discoveredLibraries = new ArrayList<>();
+                for ( Future<List<Path>> result : results ) {
+                    for ( Path libraryPath : result.get() ) {
+                        if ( allLibraries.add(libraryPath) ) {
+                            LOGGER.log(Level.INFO, "Found library path: {0}", libraryPath);
+                            discoveredLibraries.add(libraryPath);
+                        }
                     }
-
-                    return CONTINUE;
                 }
-            });
+                ret.addAll(discoveredLibraries);
+                currentLibraries = discoveredLibraries;
+            }
+        } catch (ExecutionException ex) {
+            throw new IOException("Failed to resolve additional library dependencies", ex.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        if ( dependencyCache != null ) {
+            dependencyCache.trim();
         }
         
         if ( ret.isEmpty() ) {
@@ -298,22 +427,112 @@ public class ArduinoBuilderRunner {
         return ret;
     }
     
-    private String[] createDependencyResolutionCommand( Path gccPath, List<Path> coreDirPaths, List<Path> libraryPaths, Path file ) {
-        List <String> commandElements = new ArrayList<>();
-        commandElements.add( gccPath.toString() );
-        for ( Path coreDirPath : coreDirPaths ) {
-            commandElements.add( "-I" );
-            commandElements.add( coreDirPath.toString() );
+    private List <Path> findLibrarySourceFiles( Path libDir, PathMatcher librarySourceMatcher ) throws IOException {
+        final List <Path> ret = new ArrayList<>();
+        Files.walkFileTree(libDir, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if ( !Files.isDirectory(file) && librarySourceMatcher.matches(file.getFileName()) ) {
+                    ret.add(file);
+                }
+                return CONTINUE;
+            }
+        });
+        return ret;
+    }
+    
+    private List <Path> resolveLibraryDependencies( Path librariesDir, Path file, String[] command, IncludeScanner includeScanner ) {
+        final List <Path> ret = new ArrayList<>();
+        findDependencyFilePaths( file, command, includeScanner ).forEach( dependencyFilePath -> {
+            // The index also knows the libraries in the other libraries directories:
+            Optional <LibraryIndex.Library> library = libraryIndex != null ? libraryIndex.findLibraryContaining( dependencyFilePath ) : Optional.empty();
+            if ( library.isPresent() ) {
+                if ( !ret.contains( library.get().getRootPath() ) ) {
+                    ret.add( library.get().getRootPath() );
+                }
+            } else if ( dependencyFilePath.startsWith( librariesDir ) ) {
+                Path relativeDependencyPath = librariesDir.relativize(dependencyFilePath.normalize());
+                String libraryName = relativeDependencyPath.getName(0).toString();
+                Path libraryPath = librariesDir.resolve(libraryName);
+                if ( !ret.contains(libraryPath) ) {
+                    ret.add(libraryPath);
+                }
+            } else {
+                LOGGER.log(Level.INFO, "Ignoring dependency file path:{0}", dependencyFilePath);
+            }
+        });
+        return ret;
+    }
+    
+    private List <Path> findDependencyFilePaths( Path file, String[] command, IncludeScanner includeScanner ) {
+        if ( includeScanner != null ) {
+            Optional <List<Path>> scannedDependencyFilePaths = includeScanner.scan( file );
+            if ( scannedDependencyFilePaths.isPresent() ) {
+                return scannedDependencyFilePaths.get();
+            }
+            LOGGER.log(Level.INFO, "Falling back to the compiler to resolve dependencies of: {0}", file);
+        }
+        
+        String cacheKey = null;
+        if ( dependencyCache != null ) {
+            try {
+                cacheKey = dependencyCache.createKey( file, command );
+                Optional <List<Path>> cachedDependencyFilePaths = dependencyCache.get( cacheKey );
+                if ( cachedDependencyFilePaths.isPresent() ) {
+                    LOGGER.log(Level.INFO, "Using cached dependencies for: {0}", file);
+                    return cachedDependencyFilePaths.get();
+                }
+            } catch (IOException ex) {
+                LOGGER.log( Level.WARNING, "Failed to look up cached dependencies for " + file.toAbsolutePath().toString(), ex );
+            }
+        }
+        
+        final List <Path> ret = new ArrayList<>();
+        try {
+            int errorCode = new NativeProcessRunner( (String m) -> {
+                if ( m.startsWith("--") ) {
+                    LOGGER.info(m);
+                } else if (m.startsWith(" ")) {
+                    String path = m.trim();
+                    if ( path.endsWith("\\") ) {
+                        path = path.substring(0, path.length()-2).trim();
+                    }
+                    Path dependencyFilePath = Paths.get( path );
+                    // TODO: If the "path" string does not represent a path then it probably contains error information. Find a way to handle it.
+                    if ( Files.exists( dependencyFilePath ) ) {
+                        LOGGER.log(Level.INFO, "Dependency path: {0}", dependencyFilePath);
+                        ret.add(dependencyFilePath);
+                    }
+                }
+            }).runNativeProcess( command );
+            if ( errorCode == NO_ERROR_CODE && cacheKey != null ) {
+                dependencyCache.put( cacheKey, ret );
+            }
+        } catch ( IOException | InterruptedException ex ) {
+            LOGGER.log( Level.SEVERE, "Failed to resolve additional dependencies for " + file.toAbsolutePath().toString(), ex );
         }
+        return ret;
+    }
+    
+    private List <Path> createIncludeDirPaths( List<Path> coreDirPaths, List<Path> libraryPaths ) {
+        List <Path> ret = new ArrayList<>(coreDirPaths);
         for ( Path libPath : libraryPaths ) {
-            commandElements.add( "-I" );
-            commandElements.add( libPath.toAbsolutePath().toString() );
+            ret.add( libPath.toAbsolutePath() );
             Path utilityPath = libPath.resolve("utility");
             if ( Files.exists(utilityPath) ) {
-                commandElements.add( "-I" );
-                commandElements.add( utilityPath.toAbsolutePath().toString() );
+                ret.add( utilityPath.toAbsolutePath() );
             }
-        }        
+        }
+        return ret;
+    }
+    
+    private String[] createDependencyResolutionCommand( Path gccPath, List<Path> includeDirPaths, Path file ) {
+        List <String> commandElements = new ArrayList<>();
+        commandElements.add( gccPath.toString() );
+        for ( Path includeDirPath : includeDirPaths ) {
+            commandElements.add( "-I" );
+            commandElements.add( includeDirPath.toString() );
+        }
         commandElements.add( "-MM" );
         commandElements.add( file.toAbsolutePath().toString() );
         return commandElements.toArray( new String[commandElements.size()] );
@@ -20,13 +20,10 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.List;
 import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 import org.openide.util.Utilities;
 
 public abstract class ArduinoConfig {
@@ -36,8 +33,14 @@ public abstract class ArduinoConfig {
     public static final String ROOT_PLATFORM_ARCH = "avr";
     
     private static final Logger LOGGER = Logger.getLogger(ArduinoConfig.class.getName());
+    private static final String PREFERENCES_FILENAME = "preferences.txt";
+    private static final long NO_PREFERENCES_FILE = -1;
     private static ArduinoConfig INSTANCE;
     
+    private ArduinoPreferences preferences;
+    private long preferencesLastModifiedTime = NO_PREFERENCES_FILE;
+    private Optional<String> highestArduinoVersionLine = Optional.empty();
+    
     public static synchronized ArduinoConfig getInstance() {
         if ( INSTANCE == null ) {
             if ( Utilities.isMac() ){
@@ -57,7 +60,7 @@ public abstract class ArduinoConfig {
     
     // TODO: Change return type to Optional
     public Path getSketchPath() {
-        return findInPreferences( line -> line.startsWith("sketchbook.path") )            
+        return getPreferences().getValue("sketchbook.path")
             .map( Paths::get )
             .orElseGet( () -> {
                 LOGGER.warning("Failed to find sketchbook path in the Arduino preferences file. Using default location.");
@@ -101,24 +104,13 @@ public abstract class ArduinoConfig {
     }
     
     private Optional<String> findHighestArduinoVersionLine() {
-        List<String> hardwarePathLines = filterPreferences( line -> line.split("=")[0].trim().endsWith("hardwarepath") ).collect( Collectors.toList() );
-        Version highestVersion = new Version("0.0.0");
-        String highestVersionLine = null;
-        
-        for ( String line : hardwarePathLines ) {
-            // e.g: last.ide.1.8.2.hardwarepath=...
-            Version v = new Version( line.substring(9, 14) );
-            if ( v.compareTo(highestVersion) > 0 ) {
-                highestVersion = v;
-                highestVersionLine = line;
-            }
-        }
-        
-        return Optional.ofNullable( highestVersionLine );
+        getPreferences();
+        return highestArduinoVersionLine;
     }
     
     public Optional<String> findInPreferences( Predicate<String> predicate ) {
-        return filterPreferences(predicate)
+        return getPreferences().lines()
+            .filter( predicate )
             .findFirst()
             .map(line -> {
                 String[] tokens = line.split("=");
@@ -126,22 +118,34 @@ public abstract class ArduinoConfig {
             });
     }
     
-    private Stream<String> filterPreferences( Predicate<String> predicate ) {
-        Path preferencesPath = getSettingsPath().resolve("preferences.txt");
-        LOGGER.info( "Reading Arduino preferences from: " + preferencesPath );
+    /**
+     * @return the preferences model, parsed again only if the file has been modified since the last call
+     */
+    public synchronized ArduinoPreferences getPreferences() {
+        Path preferencesPath = getSettingsPath().resolve(PREFERENCES_FILENAME);
+        long lastModifiedTime;
         try {
-            return Files.readAllLines(preferencesPath).stream()
-                .map( line -> line.trim() )
-                .filter( line -> !line.startsWith("#") )
-                .filter( predicate );
+            lastModifiedTime = Files.getLastModifiedTime(preferencesPath).toMillis();
         } catch (IOException ex) {
-            LOGGER.log(Level.SEVERE, "Failed to read the preferences.txt file", ex);
-            return Stream.empty();
+            lastModifiedTime = NO_PREFERENCES_FILE;
+        }
+        if ( preferences == null || lastModifiedTime != preferencesLastModifiedTime ) {
+            preferencesLastModifiedTime = lastModifiedTime;
+            preferences = ArduinoPreferences.EMPTY;
+            try {
+                LOGGER.info( "Reading Arduino preferences from: " + preferencesPath );
+                preferences = ArduinoPreferences.parse(preferencesPath);
+            } catch (IOException ex) {
+                LOGGER.log(Level.SEVERE, "Failed to read the preferences.txt file", ex);
+            }
+            highestArduinoVersionLine = findHighestArduinoVersionLine( preferences );
         }
+        return preferences;
     }
     
     public Optional <Path> getDefaultArduinoPlatformPath() {
-        return findInPreferences( line -> line.split("=")[0].trim().endsWith("hardwarepath") )
+        return getPreferences().getFirstHardwarePathLine()
+            .map( line -> line.substring( line.indexOf('=') + 1 ).trim() )
             .map( hardwarePath -> Paths.get( hardwarePath, ROOT_PLATFORM_VENDOR, ROOT_PLATFORM_ARCH ) );
     }
 
@@ -164,5 +168,24 @@ public abstract class ArduinoConfig {
         return findCurrentVersion().map( v -> v.compareTo( minimumValidVersion ) >= 0 ).get();
     }
     
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private static Optional<String> findHighestArduinoVersionLine( ArduinoPreferences preferences ) {
+        Version highestVersion = new Version("0.0.0");
+        String highestVersionLine = null;
+        
+        for ( String line : preferences.getHardwarePathLines() ) {
+            // e.g: last.ide.1.8.2.hardwarepath=...
+            Version v = new Version( line.substring(9, 14) );
+            if ( v.compareTo(highestVersion) > 0 ) {
+                highestVersion = v;
+                highestVersionLine = line;
+            }
+        }
+        
+        return Optional.ofNullable( highestVersionLine );
+    }
+    
 }
-
@@ -1,17 +1,38 @@
 package com.microchip.mplab.nbide.embedded.arduino.importer;
 
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Matcher;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
 public abstract class ArduinoDataSource {
     
     protected static final Pattern TOKEN_PATTERN = Pattern.compile("(\\{[\\.|\\w|\\-|_]*\\})");
     
+    private static final Logger LOGGER = Logger.getLogger(ArduinoDataSource.class.getName());
+    
+    // Recipes differ by platform and version only, so a few thousand templates cover all installed platforms
+    private static final int MAX_CACHED_TEMPLATES = 4096;
+    private static final Map <String,RecipeTemplate> TEMPLATES_CACHE = new ConcurrentHashMap<>();
+    private static final ThreadLocal<Deque<Set<String>>> DEPENDENCY_COLLECTORS = ThreadLocal.withInitial( ArrayDeque::new );
+    private static final ThreadLocal<Set<String>> KEYS_BEING_RESOLVED = ThreadLocal.withInitial( HashSet::new );
+    
     protected final ArduinoDataSource parent;
     protected Map <String,String> data;
+    private final Map <String,ResolvedValue> resolvedValuesCache = new ConcurrentHashMap<>();
+    // Incremented by every putValue() call. Resolved values computed before a modification are discarded.
+    private final AtomicLong modificationCount = new AtomicLong();
+    private volatile boolean frozen;
 
     public ArduinoDataSource(ArduinoDataSource parent) {
         this( parent, new HashMap<>() );
@@ -27,11 +48,38 @@ public abstract class ArduinoDataSource {
     }
     
     public Optional<String> getValue( String key ) {
-        return getValue(key, this, null);
+        return getValue(key, (Map<String,String>) null);
     }
     
+    /**
+     * Values that do not depend on the runtime data are resolved once and cached, 
+     * so only the keys overridden by the runtime data (and the keys that refer to them) are resolved again.
+     */
     public Optional<String> getValue( String key, Map <String,String> runtimeData ) {
-        return getValue(key, this, runtimeData);
+        // A key that refers to itself (directly or indirectly) is left unresolved:
+        Set <String> keysBeingResolved = KEYS_BEING_RESOLVED.get();
+        if ( !keysBeingResolved.add(key) ) {
+            LOGGER.log( Level.WARNING, "Cyclic reference detected while resolving \"{0}\"", key );
+            return Optional.empty();
+        }
+        try {
+            ResolvedValue resolvedValue = getResolvedValue(key);
+            if ( runtimeData == null || runtimeData.isEmpty() || resolvedValue.isIndependentOf( runtimeData.keySet() ) ) {
+                return resolvedValue.value;
+            }
+            return getValue(key, this, runtimeData);
+        } finally {
+            keysBeingResolved.remove(key);
+        }
+    }
+    
+    /**
+     * Resolves the value with the given runtime data and compiles it into a template.
+     * Runtime keys that vary from one use of the template to another (like "source_file") should be left out 
+     * of the runtime data so that they remain placeholders in the template.
+     */
+    public Optional<RecipeTemplate> getTemplate( String key, Map <String,String> runtimeData ) {
+        return getValue(key, runtimeData).map( RecipeTemplate::compile );
     }
     
     public Optional<String> getValue( String key, ArduinoDataSource context, Map <String,String> runtimeData ) {
@@ -52,21 +100,114 @@ public abstract class ArduinoDataSource {
     }
     
     public void putValue(String key, String value) {
+        if ( frozen ) throw new IllegalStateException( this + " is frozen and cannot be modified" );
         data.put(key, value);
+        modificationCount.incrementAndGet();
+    }
+    
+    /**
+     * Makes the data of this data source read-only so that it can be shared by concurrent readers.
+     * The data is converted to a {@link CompactDataMap} since frozen data sources are usually kept for long.
+     * Modifications should be made to an overlay instead, like {@link BoardConfiguration#createOverlay()}.
+     */
+    public void freeze() {
+        if ( !frozen ) {
+            data = CompactDataMap.of(data);
+            frozen = true;
+        }
+    }
+    
+    public boolean isFrozen() {
+        return frozen;
+    }
+    
+    /**
+     * @return a number that changes whenever the data of this data source or any of its parents is modified
+     */
+    protected long getModificationCount() {
+        long ret = modificationCount.get();
+        return parent != null ? ret + parent.getModificationCount() : ret;
+    }
+    
+    /**
+     * Must be called after modifying the data map directly rather than through {@link #putValue(String, String)}.
+     */
+    protected void dataModified() {
+        if ( frozen ) throw new IllegalStateException( this + " is frozen and cannot be modified" );
+        modificationCount.incrementAndGet();
     }
 
     protected String resolveTokens( String value, ArduinoDataSource context, Map <String,String> runtimeData ) {
-        String newValue = value;
-        Matcher m = TOKEN_PATTERN.matcher( value );
-        while ( m.find() ) {
-            String tokenWithBraces = m.group(1);
-            String token = tokenWithBraces.substring(1, tokenWithBraces.length()-1);
-            Optional <String> valueOpt = context.getValue( token, runtimeData );
-            if ( valueOpt.isPresent() ) {
-                newValue = newValue.replace( tokenWithBraces, valueOpt.get() );
+        if ( value.indexOf('{') == -1 ) {
+            return value;
+        }
+        // Raw values come from a limited number of data files, so their templates are kept for reuse:
+        RecipeTemplate template = TEMPLATES_CACHE.get( value );
+        if ( template == null ) {
+            if ( TEMPLATES_CACHE.size() >= MAX_CACHED_TEMPLATES ) {
+                // Values that do not come from data files (runtime data) should not grow the cache without limit
+                TEMPLATES_CACHE.clear();
             }
+            template = TEMPLATES_CACHE.computeIfAbsent( value, RecipeTemplate::compile );
         }
-        return newValue;
+        StringBuilder ret = new StringBuilder( value.length() * 2 );
+        return template.render( ret, token -> context.getValue( token, runtimeData ).orElse(null) ).toString();
+    }
+    
+    
+    /**
+     * Discards the templates of all recipes. Should be called when platforms are replaced or removed
+     * so that the recipes of old platform versions are not kept for the lifetime of the IDE.
+     */
+    static void clearTemplatesCache() {
+        TEMPLATES_CACHE.clear();
+    }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private ResolvedValue getResolvedValue( String key ) {
+        long modificationCount = getModificationCount();
+        ResolvedValue ret = resolvedValuesCache.get(key);
+        if ( ret == null || ret.modificationCount != modificationCount ) {
+            // Collect the keys of all tokens resolved on the way:
+            Deque <Set<String>> collectors = DEPENDENCY_COLLECTORS.get();
+            Set <String> dependencies = new HashSet<>();
+            dependencies.add(key);
+            collectors.push( dependencies );
+            try {
+                ret = new ResolvedValue( getValue(key, this, null), dependencies, modificationCount );
+            } finally {
+                collectors.pop();
+            }
+            resolvedValuesCache.put(key, ret);
+        }
+        // Propagate dependencies to the value being resolved, if any:
+        Set <String> outerDependencies = DEPENDENCY_COLLECTORS.get().peek();
+        if ( outerDependencies != null ) {
+            outerDependencies.addAll( ret.dependencies );
+        }
+        return ret;
+    }
+    
+    
+    private static final class ResolvedValue {
+        
+        private final Optional<String> value;
+        private final Set<String> dependencies;
+        private final long modificationCount;
+
+        ResolvedValue(Optional<String> value, Set<String> dependencies, long modificationCount) {
+            this.value = value;
+            this.dependencies = Collections.unmodifiableSet(dependencies);
+            this.modificationCount = modificationCount;
+        }
+        
+        boolean isIndependentOf( Collection<String> keys ) {
+            return keys.stream().noneMatch( dependencies::contains );
+        }
+        
     }
     
 }
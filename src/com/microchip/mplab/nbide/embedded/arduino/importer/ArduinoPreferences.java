@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * An immutable model of the Arduino "preferences.txt" file.
+ *
+ * The file is parsed once. Key lookups and the hardware path lines that {@link ArduinoConfig} 
+ * depends on are then served from memory.
+ */
+public final class ArduinoPreferences {
+
+    
+    public static final ArduinoPreferences EMPTY = new ArduinoPreferences( Collections.emptyList() );
+    
+    private static final String HARDWARE_PATH_KEY_SUFFIX = "hardwarepath";
+    
+    private final List <String> lines;
+    private final Map <String,String> values;
+    private final String firstHardwarePathLine;
+    private final List <String> hardwarePathLines;
+    
+    
+    private ArduinoPreferences( List<String> lines ) {
+        this.lines = Collections.unmodifiableList(lines);
+        Map <String,String> valuesLookup = new HashMap<>();
+        List <String> hardwarePathLinesList = new ArrayList<>();
+        for ( String line : lines ) {
+            int splitIndex = line.indexOf('=');
+            String key = (splitIndex != -1 ? line.substring(0, splitIndex) : line).trim();
+            // The first occurrence of a key wins:
+            if ( splitIndex != -1 ) {
+                valuesLookup.putIfAbsent( key, line.substring(splitIndex + 1).trim() );
+            }
+            if ( key.endsWith(HARDWARE_PATH_KEY_SUFFIX) ) {
+                hardwarePathLinesList.add( line );
+            }
+        }
+        this.values = Collections.unmodifiableMap(valuesLookup);
+        this.hardwarePathLines = Collections.unmodifiableList(hardwarePathLinesList);
+        this.firstHardwarePathLine = hardwarePathLinesList.isEmpty() ? null : hardwarePathLinesList.get(0);
+    }
+    
+    public static ArduinoPreferences parse( Path preferencesPath ) throws IOException {
+        List <String> lines = new ArrayList<>();
+        for ( String line : Files.readAllLines(preferencesPath) ) {
+            line = line.trim();
+            if ( !line.startsWith("#") ) {
+                lines.add( line );
+            }
+        }
+        return new ArduinoPreferences( lines );
+    }
+    
+    public Optional<String> getValue( String key ) {
+        return Optional.ofNullable( values.get(key) );
+    }
+    
+    /**
+     * @return trimmed lines, without comments, in the order they appear in the file
+     */
+    public Stream<String> lines() {
+        return lines.stream();
+    }
+    
+    /**
+     * @return all "...hardwarepath=..." lines, e.g. "last.ide.1.8.2.hardwarepath=/opt/arduino/hardware"
+     */
+    public List<String> getHardwarePathLines() {
+        return hardwarePathLines;
+    }
+    
+    public Optional<String> getFirstHardwarePathLine() {
+        return Optional.ofNullable( firstHardwarePathLine );
+    }
+    
+}
@@ -5,12 +5,16 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -25,6 +29,9 @@ public final class BoardConfiguration extends ArduinoDataSource {
     private final Board board;
     private final Map<BoardOption, String> boardOptionsToValuesLookup;
     private final Map<String, String> boardOptionIdsToValuesLookup;
+    private volatile EffectiveData effectiveData;
+    private volatile Path variantPath;
+    private volatile long variantPathModificationCount;
 
     public BoardConfiguration(Board board) {
         this(board, Collections.EMPTY_MAP);
@@ -50,6 +57,18 @@ public final class BoardConfiguration extends ArduinoDataSource {
         return getValue(KEY_FQBN).get();  // Risky, but we know we've put it there in the constructor
     }
 
+    /**
+     * Creates a private copy of this board configuration that shares the (frozen) board and platform data.
+     * Values put into the overlay are not visible to this board configuration or to other overlays, 
+     * so concurrent imports can each work on their own overlay without locking.
+     */
+    public BoardConfiguration createOverlay() {
+        BoardConfiguration ret = new BoardConfiguration(board, boardOptionsToValuesLookup);
+        ret.data.putAll(data);
+        ret.dataModified();
+        return ret;
+    }
+
     @Override
     public String toString() {
         return "BoardConfiguration {boardId=" + board.getBoardId() + "}";
@@ -94,23 +113,18 @@ public final class BoardConfiguration extends ArduinoDataSource {
         });
     }
 
+    /**
+     * Values are looked up in the effective configuration: the values put directly into this board configuration, 
+     * then the values of the selected board options, then the runtime data and finally the board and its platforms.
+     */
     @Override
     public Optional<String> getValue(String key, ArduinoDataSource context, Map<String, String> runtimeData) {
-        String boardConfigData = data.get(key);
-        if (boardConfigData != null) {
-            return Optional.of(boardConfigData);
-        } else {
-            return Optional.ofNullable(boardOptionsToValuesLookup.entrySet().stream().map(e -> {
-                String optionId = e.getKey().getId();
-                String optionValue = e.getValue();
-                String dataKey = optionId + "." + optionValue + "." + key;
-                return board.getValue(dataKey, this, runtimeData).orElse(null);
-            })
-                .filter(Objects::nonNull)
-                .findAny()
-                // Fallback to board:
-                .orElse(board.getValue(key, this, runtimeData).orElse(null)));
+        EffectiveData effectiveData = getEffectiveData();
+        String value = runtimeData != null && !effectiveData.overridingKeys.contains(key) ? runtimeData.get(key) : null;
+        if (value == null) {
+            value = effectiveData.values.get(key);
         }
+        return value != null ? Optional.of(resolveTokens(value, context, runtimeData)) : Optional.empty();
     }
 
     public List<Path> getCoreDirPaths() {
@@ -125,29 +139,15 @@ public final class BoardConfiguration extends ArduinoDataSource {
     }
 
     public Path getVariantPath() {
-        try {
-            Optional<String> opt = getValue("build.variant");
-            Path variantsDirPath = getPlatform().getRootPath().resolve(VARIANTS_DIRNAME);
-            if (opt.isPresent()) {
-                Path variantPath = variantsDirPath.resolve(opt.get());
-                // If the path does not exist, it might just be because of the letter casing in the variant name 
-                // so go through all directories and compare their lower-case names with lower-case variant name:
-                if (!Files.exists(variantPath)) {
-                    String lowerCaseDirName = variantPath.getFileName().toString().toLowerCase();
-                    Optional<Path> findAny = Files.list(variantsDirPath).filter(p -> p.getFileName().toString().toLowerCase().equals(lowerCaseDirName)).findAny();
-                    if (findAny.isPresent()) {
-                        variantPath = findAny.get();
-                    } else {
-                        throw new IllegalArgumentException("Did not find any variant directory for board \"" + board.getBoardId() + "\"");
-                    }
-                }
-                return variantPath;
-            } else {
-                throw new IllegalArgumentException("Did not find any variant directory for board \"" + board.getBoardId() + "\"");
-            }
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+        // Finding the variant directory may involve listing the variants directory, so the result is kept:
+        Path ret = variantPath;
+        if (ret == null || variantPathModificationCount != getModificationCount()) {
+            long modificationCount = getModificationCount();
+            ret = findVariantPath();
+            variantPath = ret;
+            variantPathModificationCount = modificationCount;
         }
+        return ret;
     }
 
     public List<Path> getCoreFilePaths() throws IOException {
@@ -191,4 +191,79 @@ public final class BoardConfiguration extends ArduinoDataSource {
         }).orElse(base);
     }
 
+    private Path findVariantPath() {
+        try {
+            Optional<String> opt = getValue("build.variant");
+            Path variantsDirPath = getPlatform().getRootPath().resolve(VARIANTS_DIRNAME);
+            if (opt.isPresent()) {
+                Path variantPath = variantsDirPath.resolve(opt.get());
+                // If the path does not exist, it might just be because of the letter casing in the variant name 
+                // so go through all directories and compare their lower-case names with lower-case variant name:
+                if (!Files.exists(variantPath)) {
+                    String lowerCaseDirName = variantPath.getFileName().toString().toLowerCase();
+                    Optional<Path> findAny = Files.list(variantsDirPath).filter(p -> p.getFileName().toString().toLowerCase().equals(lowerCaseDirName)).findAny();
+                    if (findAny.isPresent()) {
+                        variantPath = findAny.get();
+                    } else {
+                        throw new IllegalArgumentException("Did not find any variant directory for board \"" + board.getBoardId() + "\"");
+                    }
+                }
+                return variantPath;
+            } else {
+                throw new IllegalArgumentException("Did not find any variant directory for board \"" + board.getBoardId() + "\"");
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    // Flattens the board, its platforms and the selected options into a single map. 
+    // The map is rebuilt after any data source has been modified.
+    private EffectiveData getEffectiveData() {
+        EffectiveData ret = effectiveData;
+        long modificationCount = getModificationCount();
+        if (ret == null || ret.modificationCount != modificationCount) {
+            Map<String, String> values = new HashMap<>();
+            Deque<ArduinoDataSource> dataSources = new ArrayDeque<>();
+            for (ArduinoDataSource dataSource = board; dataSource != null; dataSource = dataSource.parent) {
+                dataSources.push(dataSource);
+            }
+            dataSources.forEach(dataSource -> values.putAll(dataSource.data));
+
+            Set<String> overridingKeys = new HashSet<>();
+            boardOptionsToValuesLookup.forEach((option, optionValue) -> {
+                String prefix = option.getId() + "." + optionValue + ".";
+                board.data.forEach((key, value) -> {
+                    if (key.startsWith(prefix)) {
+                        String optionKey = key.substring(prefix.length());
+                        values.put(optionKey, value);
+                        overridingKeys.add(optionKey);
+                    }
+                });
+            });
+            values.putAll(data);
+            overridingKeys.addAll(data.keySet());
+
+            ret = new EffectiveData(modificationCount, values, overridingKeys);
+            effectiveData = ret;
+        }
+        return ret;
+    }
+
+
+    private static final class EffectiveData {
+
+        private final long modificationCount;
+        private final Map<String, String> values;
+        // Keys that take precedence over runtime data
+        private final Set<String> overridingKeys;
+
+        EffectiveData(long modificationCount, Map<String, String> values, Set<String> overridingKeys) {
+            this.modificationCount = modificationCount;
+            this.values = values;
+            this.overridingKeys = overridingKeys;
+        }
+
+    }
+
 }
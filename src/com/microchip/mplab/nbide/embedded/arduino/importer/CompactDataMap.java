@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable map of the key/value pairs read from the Arduino data files.
+ *
+ * Keys and values are kept in two sorted arrays, so there are no per-entry objects and lookups are binary searches.
+ * All strings are interned: dotted keys like "compiler.cpp.flags" and most values are the same across
+ * platforms and boards, so every installed platform and board shares a single copy of each of them.
+ */
+public final class CompactDataMap extends AbstractMap<String,String> {
+
+
+    private static final CompactDataMap EMPTY = new CompactDataMap( new String[0], new String[0] );
+
+    private final String[] keys;
+    private final String[] values;
+
+
+    public static CompactDataMap of( Map<String,String> data ) {
+        if ( data instanceof CompactDataMap ) {
+            return (CompactDataMap) data;
+        }
+        if ( data.isEmpty() ) {
+            return EMPTY;
+        }
+        String[] keys = data.keySet().toArray( new String[data.size()] );
+        Arrays.sort( keys );
+        String[] values = new String[keys.length];
+        for ( int i=0; i<keys.length; i++ ) {
+            String value = data.get( keys[i] );
+            if ( value == null ) throw new IllegalArgumentException("Null value for key: " + keys[i]);
+            keys[i] = keys[i].intern();
+            values[i] = value.intern();
+        }
+        return new CompactDataMap( keys, values );
+    }
+
+    private CompactDataMap( String[] keys, String[] values ) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @Override
+    public int size() {
+        return keys.length;
+    }
+
+    @Override
+    public boolean containsKey( Object key ) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get( Object key ) {
+        int index = indexOf(key);
+        return index >= 0 ? values[index] : null;
+    }
+
+    @Override
+    public void forEach( BiConsumer<? super String, ? super String> action ) {
+        for ( int i=0; i<keys.length; i++ ) {
+            action.accept( keys[i], values[i] );
+        }
+    }
+
+    @Override
+    public Set<Entry<String,String>> entrySet() {
+        return new AbstractSet<Entry<String,String>>() {
+
+            @Override
+            public Iterator<Entry<String,String>> iterator() {
+                return new Iterator<Entry<String,String>>() {
+                    private int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < keys.length;
+                    }
+
+                    @Override
+                    public Entry<String,String> next() {
+                        if ( index >= keys.length ) throw new NoSuchElementException();
+                        Entry<String,String> ret = new SimpleImmutableEntry<>( keys[index], values[index] );
+                        index++;
+                        return ret;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return keys.length;
+            }
+
+        };
+    }
+
+
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private int indexOf( Object key ) {
+        return key instanceof String ? Arrays.binarySearch( keys, (String) key ) : -1;
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Tracks nested conditional preprocessor blocks. Only the constants "0" and "1" are evaluated, 
+ * any other condition makes the block (and the branches that follow it) conditional.
+ */
+final class ConditionalBlocks {
+
+    
+    private static enum State {
+        ALWAYS, SKIPPED, UNKNOWN
+    }
+    
+    private final Deque <State> states = new ArrayDeque<>();
+    // For each open block, whether one of the branches before the current one was (or may have been) taken:
+    private final Deque <State> previousBranches = new ArrayDeque<>();
+    
+    
+    /**
+     * @param directiveName the name of a preprocessor directive, e.g. "ifdef"
+     * @param argument the rest of the directive
+     * @param alwaysTrue true if the condition is known to hold, e.g. for an include guard
+     * @return true if the directive opens, continues or closes a conditional block
+     */
+    boolean update( String directiveName, String argument, boolean alwaysTrue ) {
+        State state;
+        switch ( directiveName ) {
+            case "if":
+                state = alwaysTrue ? State.ALWAYS : evaluate( argument );
+                states.push( state );
+                previousBranches.push( state );
+                return true;
+            case "ifdef":
+            case "ifndef":
+                state = alwaysTrue ? State.ALWAYS : State.UNKNOWN;
+                states.push( state );
+                previousBranches.push( state );
+                return true;
+            case "elif":
+                if ( !states.isEmpty() ) {
+                    states.pop();
+                    State previous = previousBranches.pop();
+                    if ( previous == State.ALWAYS ) {
+                        state = State.SKIPPED;
+                    } else {
+                        state = evaluate( argument );
+                        if ( previous == State.UNKNOWN && state == State.ALWAYS ) {
+                            state = State.UNKNOWN;
+                        }
+                    }
+                    states.push( state );
+                    previousBranches.push( merge( previous, state ) );
+                }
+                return true;
+            case "else":
+                if ( !states.isEmpty() ) {
+                    states.pop();
+                    State previous = previousBranches.pop();
+                    if ( previous == State.ALWAYS ) {
+                        state = State.SKIPPED;
+                    } else if ( previous == State.SKIPPED ) {
+                        state = State.ALWAYS;
+                    } else {
+                        state = State.UNKNOWN;
+                    }
+                    states.push( state );
+                    previousBranches.push( merge( previous, state ) );
+                }
+                return true;
+            case "endif":
+                if ( !states.isEmpty() ) {
+                    states.pop();
+                    previousBranches.pop();
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+    
+    /**
+     * @return true if the code at the current position is never compiled
+     */
+    boolean isSkipped() {
+        return states.contains( State.SKIPPED );
+    }
+    
+    /**
+     * @return true if the code at the current position may or may not be compiled
+     */
+    boolean isConditional() {
+        return !isSkipped() && states.contains( State.UNKNOWN );
+    }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private static State evaluate( String argument ) {
+        if ( argument.equals("0") ) {
+            return State.SKIPPED;
+        } else if ( argument.equals("1") ) {
+            return State.ALWAYS;
+        } else {
+            return State.UNKNOWN;
+        }
+    }
+    
+    // Once a branch has been taken all following branches of the block are skipped
+    private static State merge( State previous, State current ) {
+        if ( previous == State.ALWAYS || current == State.ALWAYS ) {
+            return State.ALWAYS;
+        } else if ( previous == State.UNKNOWN || current == State.UNKNOWN ) {
+            return State.UNKNOWN;
+        } else {
+            return State.SKIPPED;
+        }
+    }
+    
+}
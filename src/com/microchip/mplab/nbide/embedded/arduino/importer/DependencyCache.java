@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import com.microchip.mplab.nbide.embedded.arduino.utils.ContentHasher;
+import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of header dependency lists produced by "gcc -MM".
+ *
+ * Entries are keyed by a hash of the source file contents, the full dependency resolution command
+ * (compiler path and include paths) and the size/modification time of the compiler executable,
+ * so installing a different toolchain automatically results in new keys. Each entry also records the
+ * size and modification time of every listed header, and an entry is discarded as soon as one of
+ * them differs, because an edited header may include different files. Stale entries are removed by
+ * {@link #trim()} which keeps the most recently used entries only.
+ */
+public class DependencyCache {
+
+
+    public static final int DEFAULT_MAX_ENTRIES = 20000;
+
+    private static final Logger LOGGER = Logger.getLogger(DependencyCache.class.getName());
+    private static final String ENTRY_EXTENSION = ".dep";
+    private static final String STAMP_SEPARATOR = "\t";
+
+    private final Path cacheDirPath;
+    private final int maxEntries;
+
+
+    public DependencyCache( Path cacheDirPath ) {
+        this( cacheDirPath, DEFAULT_MAX_ENTRIES );
+    }
+
+    public DependencyCache( Path cacheDirPath, int maxEntries ) {
+        if ( cacheDirPath == null ) throw new IllegalArgumentException("cacheDirPath cannot be null");
+        if ( maxEntries < 1 ) throw new IllegalArgumentException("maxEntries must be greater than 0");
+        this.cacheDirPath = cacheDirPath;
+        this.maxEntries = maxEntries;
+    }
+
+    public Path getCacheDirPath() {
+        return cacheDirPath;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public String createKey( Path sourceFilePath, String... command ) throws IOException {
+        ContentHasher hasher = new ContentHasher();
+        for ( String element : command ) {
+            hasher.update( element );
+        }
+        if ( command.length > 0 ) {
+            // The compiler executable is identified by its size and modification time:
+            hasher.updateFileIdentity( Paths.get( command[0] ) );
+        }
+        return hasher.updateFileContents( sourceFilePath ).toHexString();
+    }
+
+    public Optional<List<Path>> get( String key ) {
+        Path entryPath = getEntryPath(key);
+        if ( !Files.exists(entryPath) ) {
+            return Optional.empty();
+        }
+        try {
+            List <Path> dependencyPaths = new ArrayList<>();
+            for ( String line : Files.readAllLines(entryPath, StandardCharsets.UTF_8) ) {
+                if ( line.isEmpty() ) continue;
+                // Each line is "<size> TAB <modification time> TAB <path>".
+                // A header that disappeared or changed means the entry no longer describes the source file correctly:
+                String[] fields = line.split( STAMP_SEPARATOR, 3 );
+                Path dependencyPath = (fields.length == 3) ? Paths.get( fields[2] ) : null;
+                if ( dependencyPath == null || !createStamp(dependencyPath).equals( fields[0] + STAMP_SEPARATOR + fields[1] ) ) {
+                    Files.deleteIfExists(entryPath);
+                    return Optional.empty();
+                }
+                dependencyPaths.add( dependencyPath );
+            }
+            Files.setLastModifiedTime( entryPath, FileTime.fromMillis( System.currentTimeMillis() ) );
+            return Optional.of(dependencyPaths);
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to read dependency cache entry: " + entryPath, ex );
+            return Optional.empty();
+        }
+    }
+
+    public void put( String key, List<Path> dependencyPaths ) {
+        try {
+            Files.createDirectories(cacheDirPath);
+            List <String> lines = new ArrayList<>();
+            for ( Path dependencyPath : dependencyPaths ) {
+                lines.add( createStamp(dependencyPath) + STAMP_SEPARATOR + dependencyPath.toString() );
+            }
+            // Write to a temporary file first so that concurrent readers never see a partial entry:
+            Path tempEntryPath = Files.createTempFile(cacheDirPath, key, ".tmp");
+            Files.write(tempEntryPath, lines, StandardCharsets.UTF_8);
+            Files.move(tempEntryPath, getEntryPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to write dependency cache entry for key: " + key, ex );
+        }
+    }
+
+    public void trim() throws IOException {
+        if ( !Files.exists(cacheDirPath) ) return;
+        List <Path> entryPaths;
+        try (Stream<Path> stream = Files.list(cacheDirPath)) {
+            entryPaths = stream
+                .filter( p -> p.getFileName().toString().endsWith(ENTRY_EXTENSION) )
+                .collect( Collectors.toCollection( ArrayList::new ) );
+        }
+        if ( entryPaths.size() <= maxEntries ) return;
+
+        entryPaths.sort( Comparator.comparingLong( DependencyCache::getLastModifiedTime ) );
+        int excess = entryPaths.size() - maxEntries;
+        LOGGER.log( Level.INFO, "Removing {0} least recently used dependency cache entries", excess );
+        for ( int i=0; i<excess; i++ ) {
+            Files.deleteIfExists( entryPaths.get(i) );
+        }
+    }
+
+    public void clear() throws IOException {
+        if ( Files.exists(cacheDirPath) ) {
+            Files.walkFileTree(cacheDirPath, new DeletingFileVisitor());
+        }
+    }
+
+
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private Path getEntryPath( String key ) {
+        return cacheDirPath.resolve( key + ENTRY_EXTENSION );
+    }
+
+    private static String createStamp( Path path ) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes( path, BasicFileAttributes.class );
+            return attributes.size() + STAMP_SEPARATOR + attributes.lastModifiedTime().toMillis();
+        } catch (IOException ex) {
+            // Missing files never match a stored stamp
+            return "";
+        }
+    }
+
+    private static long getLastModifiedTime( Path path ) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+}
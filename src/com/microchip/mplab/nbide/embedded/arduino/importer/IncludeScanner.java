@@ -0,0 +1,317 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A lightweight, in-process replacement for "gcc -MM" that follows #include directives
+ * through the given include directories.
+ *
+ * The scanner does not evaluate preprocessor conditions. Include guards and "#if 0" blocks
+ * are recognized, includes inside any other conditional block are followed only if they resolve
+ * to one of the core directories. A conditional include of any other header, as well as a computed
+ * include ("#include MACRO"), makes the result uncertain and {@link #scan(Path)} returns an empty
+ * Optional so that the caller can fall back to the compiler.
+ *
+ * If a {@link LibraryIndex} is given, a header that is not found in the include directories
+ * is looked up in the index so that headers of libraries that are not yet known can be followed too.
+ *
+ * Headers that cannot be resolved are ignored, since they are most likely system headers. A scanner that
+ * is given the system include directories of the compiler treats them as uncertain instead and also follows
+ * "#include_next" directives. It is meant for callers that need every dependency, like a cache key.
+ * Only the system headers themselves may still include headers that cannot be resolved, since they contain
+ * branches for other hosts and targets.
+ *
+ * Instances are thread-safe.
+ */
+public class IncludeScanner {
+
+
+    private static final Logger LOGGER = Logger.getLogger(IncludeScanner.class.getName());
+
+    private final List <Path> coreDirPaths;
+    private final List <Path> includeDirPaths;
+    private final Map <Path, List<Directive>> directivesCache = new ConcurrentHashMap<>();
+    private final LibraryIndex libraryIndex;
+    private final String architecture;
+    private final List <Path> systemIncludeDirPaths;
+
+
+    public IncludeScanner( List<Path> coreDirPaths, List<Path> includeDirPaths ) {
+        this( coreDirPaths, includeDirPaths, null, null, null );
+    }
+
+    /**
+     * @param systemIncludeDirPaths the directories the compiler searches after the include directories
+     */
+    public IncludeScanner( List<Path> coreDirPaths, List<Path> includeDirPaths, List<Path> systemIncludeDirPaths ) {
+        this( coreDirPaths, includeDirPaths, null, null, systemIncludeDirPaths );
+    }
+
+    public IncludeScanner( List<Path> coreDirPaths, List<Path> includeDirPaths, LibraryIndex libraryIndex, String architecture ) {
+        this( coreDirPaths, includeDirPaths, libraryIndex, architecture, null );
+    }
+
+    private IncludeScanner( List<Path> coreDirPaths, List<Path> includeDirPaths, LibraryIndex libraryIndex, String architecture, List<Path> systemIncludeDirPaths ) {
+        this.coreDirPaths = new ArrayList<>(coreDirPaths);
+        this.includeDirPaths = new ArrayList<>(includeDirPaths);
+        this.libraryIndex = libraryIndex;
+        this.architecture = architecture;
+        this.systemIncludeDirPaths = systemIncludeDirPaths != null ? new ArrayList<>(systemIncludeDirPaths) : null;
+        if ( systemIncludeDirPaths != null ) {
+            this.includeDirPaths.addAll( systemIncludeDirPaths );
+        }
+    }
+
+    /**
+     * @param sourceFilePath the file to scan
+     * @return all headers the file depends on (directly or indirectly) or an empty Optional
+     * if the dependencies could not be determined with certainty
+     */
+    public Optional<List<Path>> scan( Path sourceFilePath ) {
+        Set <Path> dependencyPaths = new LinkedHashSet<>();
+        Deque <Path> filesToScan = new ArrayDeque<>();
+        filesToScan.add( sourceFilePath );
+
+        try {
+            while ( !filesToScan.isEmpty() ) {
+                Path filePath = filesToScan.poll();
+                List <Path> includedFilePaths = findIncludedFiles( filePath );
+                if ( includedFilePaths == null ) {
+                    LOGGER.log(Level.INFO, "Include scanner could not determine dependencies of: {0}", filePath);
+                    return Optional.empty();
+                }
+                for ( Path includedFilePath : includedFilePaths ) {
+                    if ( dependencyPaths.add( includedFilePath ) ) {
+                        filesToScan.add( includedFilePath );
+                    }
+                }
+            }
+        } catch (IOException ex) {
+            LOGGER.log(Level.WARNING, "Failed to scan includes of " + sourceFilePath, ex);
+            return Optional.empty();
+        }
+
+        dependencyPaths.remove( sourceFilePath );
+        return Optional.of( new ArrayList<>(dependencyPaths) );
+    }
+
+
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    // Returns null if the result is uncertain
+    private List <Path> findIncludedFiles( Path filePath ) throws IOException {
+        List <Directive> directives = directivesCache.get(filePath);
+        if ( directives == null ) {
+            directives = parseDirectives( filePath );
+            directivesCache.put(filePath, directives);
+        }
+
+        List <Path> ret = new ArrayList<>();
+        ConditionalBlocks conditions = new ConditionalBlocks();
+
+        for ( int i=0; i<directives.size(); i++ ) {
+            Directive directive = directives.get(i);
+            if ( conditions.update( directive.name, directive.argument, directive.name.equals("ifndef") && isIncludeGuard( directives, i ) ) ) {
+                continue;
+            }
+            boolean includeNext = systemIncludeDirPaths != null && directive.name.equals("include_next");
+            if ( (!directive.name.equals("include") && !includeNext) || conditions.isSkipped() ) {
+                continue;
+            }
+            boolean conditional = conditions.isConditional();
+            String argument = directive.argument;
+            if ( argument.length() < 2 || (argument.charAt(0) != '"' && argument.charAt(0) != '<') ) {
+                // Computed include
+                return null;
+            }
+            boolean quoted = argument.charAt(0) == '"';
+            int endIndex = argument.indexOf( quoted ? '"' : '>', 1 );
+            if ( endIndex == -1 ) {
+                return null;
+            }
+            String headerName = argument.substring(1, endIndex);
+            Path headerPath = includeNext ? resolveNextHeader( filePath, headerName ) : resolveHeader( filePath, headerName, quoted );
+            if ( headerPath == null ) {
+                if ( systemIncludeDirPaths != null && !isSystemFile( filePath ) ) {
+                    return null;
+                }
+                // Most likely a system header or a header for a different architecture
+                continue;
+            }
+            // Following an include that may not be compiled only adds a dependency, which is harmless for a cache key
+            if ( conditional && systemIncludeDirPaths == null && !isCoreFile( headerPath ) ) {
+                return null;
+            }
+            ret.add( headerPath );
+        }
+        return ret;
+    }
+
+    private boolean isIncludeGuard( List<Directive> directives, int ifndefIndex ) {
+        if ( ifndefIndex + 1 >= directives.size() ) return false;
+        Directive next = directives.get( ifndefIndex + 1 );
+        if ( !next.name.equals("define") ) return false;
+        String macroName = directives.get( ifndefIndex ).argument;
+        // Only "#define NAME" without a value is a guard, "#ifndef BUF_SIZE / #define BUF_SIZE 64" is a default value
+        return !macroName.isEmpty() && next.argument.equals(macroName);
+    }
+
+    private boolean isCoreFile( Path headerPath ) {
+        return coreDirPaths.stream().anyMatch( headerPath::startsWith );
+    }
+
+    private boolean isSystemFile( Path filePath ) {
+        return systemIncludeDirPaths.stream().anyMatch( filePath::startsWith );
+    }
+
+    private Path resolveHeader( Path includingFilePath, String headerName, boolean quoted ) {
+        if ( quoted ) {
+            Path candidate = includingFilePath.getParent().resolve( headerName ).normalize();
+            if ( Files.isRegularFile(candidate) ) {
+                return candidate;
+            }
+        }
+        for ( Path includeDirPath : includeDirPaths ) {
+            Path candidate = includeDirPath.resolve( headerName ).normalize();
+            if ( Files.isRegularFile(candidate) ) {
+                return candidate;
+            }
+        }
+        if ( libraryIndex != null ) {
+            Path candidate = libraryIndex.findLibrary( headerName, architecture )
+                .map( library -> library.getSourceDirPath().resolve( headerName ) )
+                .orElse( null );
+            if ( candidate != null && Files.isRegularFile(candidate) ) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    // Like the compiler, continues the search after the include directory the including file was found in
+    private Path resolveNextHeader( Path includingFilePath, String headerName ) {
+        int startIndex = 0;
+        for ( int i=0; i<includeDirPaths.size(); i++ ) {
+            if ( includingFilePath.startsWith( includeDirPaths.get(i) ) ) {
+                startIndex = i + 1;
+                break;
+            }
+        }
+        for ( Path includeDirPath : includeDirPaths.subList( startIndex, includeDirPaths.size() ) ) {
+            Path candidate = includeDirPath.resolve( headerName ).normalize();
+            if ( Files.isRegularFile(candidate) ) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static List <Directive> parseDirectives( Path filePath ) throws IOException {
+        String text = new String( Files.readAllBytes(filePath), StandardCharsets.ISO_8859_1 );
+        List <Directive> ret = new ArrayList<>();
+        StringBuilder line = new StringBuilder();
+        boolean inBlockComment = false;
+        int length = text.length();
+
+        for ( int i=0; i<=length; i++ ) {
+            char c = i < length ? text.charAt(i) : '\n';
+            char next = i+1 < length ? text.charAt(i+1) : '\0';
+            if ( inBlockComment ) {
+                if ( c == '*' && next == '/' ) {
+                    inBlockComment = false;
+                    line.append(' ');
+                    i++;
+                } else if ( c == '\n' ) {
+                    // Directives never span a block comment in practice, so end the logical line here
+                    addDirective( ret, line );
+                    line.setLength(0);
+                }
+            } else if ( c == '\\' && (next == '\n' || next == '\r') ) {
+                // Line continuation
+                i += (next == '\r' && i+2 < length && text.charAt(i+2) == '\n') ? 2 : 1;
+            } else if ( c == '/' && next == '*' ) {
+                inBlockComment = true;
+                i++;
+            } else if ( c == '/' && next == '/' ) {
+                while ( i+1 < length && text.charAt(i+1) != '\n' ) i++;
+            } else if ( c == '"' || c == '\'' ) {
+                // Copy string and character literals verbatim so that comment markers inside them are ignored
+                line.append(c);
+                while ( i+1 < length && text.charAt(i+1) != c && text.charAt(i+1) != '\n' ) {
+                    char literalChar = text.charAt(++i);
+                    line.append(literalChar);
+                    if ( literalChar == '\\' && i+1 < length ) {
+                        line.append( text.charAt(++i) );
+                    }
+                }
+                if ( i+1 < length && text.charAt(i+1) == c ) {
+                    line.append( text.charAt(++i) );
+                }
+            } else if ( c == '\n' ) {
+                addDirective( ret, line );
+                line.setLength(0);
+            } else if ( c != '\r' ) {
+                line.append(c);
+            }
+        }
+        return ret;
+    }
+
+    private static void addDirective( List<Directive> directives, StringBuilder line ) {
+        int i = 0;
+        int length = line.length();
+        while ( i < length && Character.isWhitespace( line.charAt(i) ) ) i++;
+        if ( i == length || line.charAt(i) != '#' ) return;
+        i++;
+        while ( i < length && Character.isWhitespace( line.charAt(i) ) ) i++;
+        int nameStart = i;
+        while ( i < length && Character.isJavaIdentifierPart( line.charAt(i) ) ) i++;
+        String name = line.substring(nameStart, i);
+        String argument = line.substring(i).trim();
+        directives.add( new Directive(name, argument) );
+    }
+
+
+    private static final class Directive {
+
+        private final String name;
+        private final String argument;
+
+        Directive(String name, String argument) {
+            this.name = name;
+            this.argument = argument;
+        }
+
+    }
+
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A streaming (pull) reader for the "includes.cache" file written by arduino-builder.
+ *
+ * The file is a JSON array of objects. Only the "Sourcefile" and "Includepath" string fields
+ * of each object are extracted, everything else is skipped without building an object tree:
+ * <pre>
+ * try ( IncludesCacheReader reader = new IncludesCacheReader( Files.newBufferedReader(path) ) ) {
+ *     while ( reader.next() ) {
+ *         String includePath = reader.getIncludepath();
+ *     }
+ * }
+ * </pre>
+ */
+public final class IncludesCacheReader implements Closeable {
+
+
+    private static final String KEY_SOURCEFILE = "Sourcefile";
+    private static final String KEY_INCLUDEPATH = "Includepath";
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder stringBuilder = new StringBuilder();
+    private int position;
+    private int limit;
+    private boolean started;
+    private boolean finished;
+
+    private String sourcefile;
+    private String includepath;
+
+
+    public IncludesCacheReader( Reader reader ) {
+        this.reader = reader;
+    }
+
+    /**
+     * Advances to the next entry.
+     *
+     * @return false if there are no more entries
+     * @throws IOException if the content is not a JSON array of objects
+     */
+    public boolean next() throws IOException {
+        if ( finished ) return false;
+
+        sourcefile = null;
+        includepath = null;
+
+        int c = skipWhitespace();
+        if ( !started ) {
+            started = true;
+            if ( c == 'n' ) {
+                // arduino-builder writes "null" when there are no entries
+                skipLiteral();
+                finished = true;
+                return false;
+            }
+            expect( c, '[' );
+            c = skipWhitespace();
+        } else if ( c == ',' ) {
+            c = skipWhitespace();
+        }
+
+        if ( c == ']' ) {
+            finished = true;
+            return false;
+        }
+        expect( c, '{' );
+        readEntry();
+        return true;
+    }
+
+    public String getSourcefile() {
+        return sourcefile;
+    }
+
+    public String getIncludepath() {
+        return includepath;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private void readEntry() throws IOException {
+        int c = skipWhitespace();
+        if ( c == '}' ) return;
+        while ( true ) {
+            expect( c, '"' );
+            String key = readString();
+            expect( skipWhitespace(), ':' );
+            c = skipWhitespace();
+            if ( c == '"' && KEY_SOURCEFILE.equals(key) ) {
+                sourcefile = readString();
+            } else if ( c == '"' && KEY_INCLUDEPATH.equals(key) ) {
+                includepath = readString();
+            } else {
+                skipValue( c );
+            }
+            c = skipWhitespace();
+            if ( c == '}' ) return;
+            expect( c, ',' );
+            c = skipWhitespace();
+        }
+    }
+
+    private void skipValue( int c ) throws IOException {
+        switch ( c ) {
+            case '"':
+                readString();
+                break;
+            case '{':
+                c = skipWhitespace();
+                if ( c == '}' ) return;
+                while ( true ) {
+                    expect( c, '"' );
+                    readString();
+                    expect( skipWhitespace(), ':' );
+                    skipValue( skipWhitespace() );
+                    c = skipWhitespace();
+                    if ( c == '}' ) return;
+                    expect( c, ',' );
+                    c = skipWhitespace();
+                }
+            case '[':
+                c = skipWhitespace();
+                if ( c == ']' ) return;
+                while ( true ) {
+                    skipValue( c );
+                    c = skipWhitespace();
+                    if ( c == ']' ) return;
+                    expect( c, ',' );
+                    c = skipWhitespace();
+                }
+            case EOF:
+                throw new IOException("Unexpected end of includes.cache");
+            default:
+                // Numbers, true, false and null
+                skipLiteral();
+        }
+    }
+
+    private void skipLiteral() throws IOException {
+        while ( true ) {
+            int c = peek();
+            if ( c == EOF || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c) ) return;
+            position++;
+        }
+    }
+
+    private String readString() throws IOException {
+        stringBuilder.setLength(0);
+        while ( true ) {
+            int c = read();
+            switch ( c ) {
+                case '"':
+                    return stringBuilder.toString();
+                case '\\':
+                    readEscapeSequence();
+                    break;
+                case EOF:
+                    throw new IOException("Unterminated string in includes.cache");
+                default:
+                    stringBuilder.append( (char) c );
+            }
+        }
+    }
+
+    private void readEscapeSequence() throws IOException {
+        int c = read();
+        switch ( c ) {
+            case 'b': stringBuilder.append('\b'); break;
+            case 'f': stringBuilder.append('\f'); break;
+            case 'n': stringBuilder.append('\n'); break;
+            case 'r': stringBuilder.append('\r'); break;
+            case 't': stringBuilder.append('\t'); break;
+            case 'u':
+                int codePoint = 0;
+                for ( int i=0; i<4; i++ ) {
+                    int digit = Character.digit( read(), 16 );
+                    if ( digit == -1 ) throw new IOException("Illegal unicode escape sequence in includes.cache");
+                    codePoint = (codePoint << 4) | digit;
+                }
+                stringBuilder.append( (char) codePoint );
+                break;
+            case EOF:
+                throw new IOException("Unterminated string in includes.cache");
+            default:
+                // \" \\ and \/
+                stringBuilder.append( (char) c );
+        }
+    }
+
+    private void expect( int actual, char expected ) throws IOException {
+        if ( actual != expected ) {
+            String found = (actual == EOF) ? "end of file" : "'" + (char) actual + "'";
+            throw new IOException("Malformed includes.cache: expected '" + expected + "' but found " + found);
+        }
+    }
+
+    private int skipWhitespace() throws IOException {
+        int c;
+        do {
+            c = read();
+        } while ( c != EOF && Character.isWhitespace(c) );
+        return c;
+    }
+
+    private int read() throws IOException {
+        int c = peek();
+        if ( c != EOF ) position++;
+        return c;
+    }
+
+    private int peek() throws IOException {
+        if ( position == limit ) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if ( limit <= 0 ) {
+                limit = 0;
+                return EOF;
+            }
+        }
+        return buffer[position];
+    }
+
+}
@@ -15,13 +15,22 @@
 
 package com.microchip.mplab.nbide.embedded.arduino.importer;
 
-import com.microchip.mplab.nbide.embedded.arduino.utils.CopyingFileVisitor;
+import com.microchip.mplab.nbide.embedded.api.LanguageTool;
+import com.microchip.mplab.nbide.embedded.arduino.utils.ContentHasher;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 
 public class LibCoreBuilder extends AbstractMakeAssistant {
@@ -30,20 +39,39 @@ public class LibCoreBuilder extends AbstractMakeAssistant {
     public static final String LIB_CORE_NAME = "Core";
     public static final String LIB_CORE_FILENAME = "lib" + LIB_CORE_NAME + ".a";
     
+    // Printed by make for every target whose recipe has failed, e.g. "make: *** [Makefile-Core:12: obj/unity-0.c.o] Error 1"
+    private static final String FAILED_TARGET_MARKER = "*** [";
+    private static final Logger LOGGER = Logger.getLogger(LibCoreBuilder.class.getName());
+    
     private final Path sourceDir;
+    private final Path outputDir;
     private Path buildDirPath;
     private BoardConfiguration boardConfiguration;
     private GCCToolFinder toolFinder;
     private Path libCorePath;
     private String archiveCommand;
+    private boolean temporaryBuildDir;
+    private LibCoreCache libCoreCache;
+    private boolean restoredFromCache;
     
 
     public LibCoreBuilder() {
-        this.sourceDir = null;
+        this( null, null );
     }
     
     public LibCoreBuilder( Path sourceDir ) {
+        this( sourceDir, null );
+    }
+    
+    /**
+     * @param sourceDir a directory with a flat copy of the core and variant sources, or null to compile 
+     * the sources of the board's core and variant directories
+     * @param outputDir the directory the Makefile, the object files and the library are written to, 
+     * or null to use a temporary directory
+     */
+    public LibCoreBuilder( Path sourceDir, Path outputDir ) {
         this.sourceDir = sourceDir;
+        this.outputDir = outputDir;
     }
 
     @Override
@@ -59,6 +87,14 @@ public class LibCoreBuilder extends AbstractMakeAssistant {
         return libCorePath;
     }
 
+    public LibCoreCache getLibCoreCache() {
+        return libCoreCache;
+    }
+
+    public void setLibCoreCache(LibCoreCache libCoreCache) {
+        this.libCoreCache = libCoreCache;
+    }
+
     @Override
     public Path getBuildDirPath() {
         return buildDirPath;
@@ -83,44 +119,126 @@ public class LibCoreBuilder extends AbstractMakeAssistant {
         build(makefilePath, toolFinder, null);
     }
     
-    // TODO: Cleanup temp directories even after failed import
+    /**
+     * Rebuilds the library in the directory of an existing Makefile. Object files and dependency 
+     * files from previous builds are reused so only the changed sources are recompiled.
+     */
     public void build( Path makefilePath, GCCToolFinder toolFinder, Consumer<String> messageConsumer ) throws IOException, InterruptedException {
-        this.buildDirPath = Files.createTempDirectory("build");
+        this.buildDirPath = makefilePath.getParent();
+        this.temporaryBuildDir = false;
         this.toolFinder = toolFinder;
         this.libCorePath = buildDirPath.resolve(LIB_CORE_FILENAME);
-        updateMakefile( makefilePath, toolFinder );
+        updateMakefile( makefilePath );
         invokeMakeTool(messageConsumer, messageConsumer);
     }
     
+    /**
+     * Compiles the sources in place: only the object files, the Makefile and the library are written to the build directory.
+     */
+    // TODO: Cleanup temp directories even after failed import
     public void build( BoardConfiguration boardConfiguration, GCCToolFinder toolFinder, Consumer<String> messageConsumer ) throws IOException, InterruptedException {
-        this.buildDirPath = Files.createTempDirectory("build");
+        this.temporaryBuildDir = (outputDir == null);
+        this.buildDirPath = temporaryBuildDir ? Files.createTempDirectory("build") : Files.createDirectories(outputDir);
         this.boardConfiguration = boardConfiguration;
         this.toolFinder = toolFinder;
         this.libCorePath = buildDirPath.resolve(LIB_CORE_FILENAME);
-        if ( sourceDir != null ) {
-            copySourceFiles();
+        if ( libCoreCache == null ) {
+            build( messageConsumer, messageConsumer );
+            return;
+        }
+        
+        checkPrerequisites();
+        generateMakefile();
+        writeMakefile();
+        restoredFromCache = libCoreCache.restore( createCacheKey(), libCorePath );
+        if ( restoredFromCache ) {
+            return;
+        }
+        invokeMakeTool( messageConsumer, messageConsumer );
+        if ( !restoredFromCache ) {
+            // The key is created from the final Makefile, which is the per-file one if the unity build has failed
+            libCoreCache.store( createCacheKey(), libCorePath );
         }
-        build( messageConsumer, messageConsumer );
     }
     
     @Override
-    protected void generateMakefile() throws IOException {
-        super.generateMakefile();
-        
-        // Generate archiver command:
-        Map <String,String> runtimeData = new HashMap<>();
-        runtimeData.put( getToolsPathKey(), getToolchainPath().toString() );
+    public void cleanup() {
+        // Never remove a build directory that holds an imported core
+        if ( temporaryBuildDir ) {
+            super.cleanup();
+        }
+    }
+    
+    @Override
+    protected void invokeMakeTool( Consumer<String> messageConsumer, Consumer<String> errorConsumer ) throws IOException, InterruptedException {
+        long startTime = System.currentTimeMillis();
+        boolean unityBuild = hasUnitySourceFiles();
+        if ( !unityBuild ) {
+            super.invokeMakeTool( messageConsumer, errorConsumer );
+        } else {
+            List <String> failedTargetLines = new ArrayList<>();
+            Consumer <String> failureCollector = line -> {
+                if ( line.contains(FAILED_TARGET_MARKER) ) {
+                    failedTargetLines.add(line);
+                }
+                if ( messageConsumer != null ) {
+                    messageConsumer.accept(line);
+                }
+            };
+            try {
+                super.invokeMakeTool( failureCollector, errorConsumer );
+            } catch ( NativeProcessFailureException ex ) {
+                // The per-file build can only help if make failed on the merged files and not on a file that is compiled alone:
+                if ( failedTargetLines.isEmpty() || !failedTargetLines.stream().allMatch( l -> l.contains( "/" + UNITY_SOURCE_FILE_PREFIX ) ) ) {
+                    throw ex;
+                }
+                LOGGER.log( Level.WARNING, "Unity build of the core failed for board \"{0}\". Retrying with a per-file build. "
+                    + "The files that cannot be merged should be added to the unity build denylist.", boardConfiguration.getBoardId() );
+                unityBuild = false;
+                setUnityBuildEnabled(false);
+                try {
+                    generateMakefile();
+                    writeMakefile();
+                    // The per-file build may have been cached by an earlier import:
+                    restoredFromCache = libCoreCache != null && libCoreCache.restore( createCacheKey(), libCorePath );
+                    if ( restoredFromCache ) {
+                        return;
+                    }
+                    super.invokeMakeTool( messageConsumer, errorConsumer );
+                } finally {
+                    setUnityBuildEnabled(true);
+                }
+            }
+        }
+        // Allows comparing the unity build with the per-file build:
+        LOGGER.log( Level.INFO, "Built {0} in {1} ms ({2} build, {3} bytes)", new Object[] {
+            libCorePath, System.currentTimeMillis() - startTime, unityBuild ? "unity" : "per-file", Files.exists(libCorePath) ? Files.size(libCorePath) : 0
+        });
+    }
+    
+    @Override
+    protected List<String> generateTargetRecipe() {
+        // Generate archiver commands:
+        List <String> ret = new ArrayList<>();
+        Map <String,String> runtimeData = createRuntimeData();
         runtimeData.put( "archive_file_path", LIB_CORE_FILENAME );
+        RecipeTemplate template = boardConfiguration.getTemplate("recipe.ar.pattern", runtimeData).get();
+        Map <String,String> objectData = new HashMap<>();
         getObjectFilenames().forEach( n -> {
-            runtimeData.put("object_file", n);
-            getMakefileContents().add( "\t" + boardConfiguration.getValue("recipe.ar.pattern", runtimeData).get() );
+            objectData.put("object_file", n);
+            ret.add( template.render(objectData) );
         });
-    } 
+        return ret;
+    }
 
     @Override
     protected String mapSourceFilePath(Path sourceFilePath) {
         if ( sourceDir != null ) {
-            return sourceFilePath.getFileName().toString();
+            // The source directory holds flat copies of the core and variant files. Inside the build directory the paths 
+            // are relative so that the Makefile (and the cache key) do not depend on where the project is:
+            return isSourceDirBuildDir() 
+                ? sourceFilePath.getFileName().toString() 
+                : sourceDir.resolve( sourceFilePath.getFileName() ).toAbsolutePath().toString();
         } else {
             return super.mapSourceFilePath(sourceFilePath);
         }
@@ -128,13 +246,17 @@ public class LibCoreBuilder extends AbstractMakeAssistant {
     
     @Override
     protected String buildIncludesSection( BoardConfiguration boardConfiguration ) {
+        return isSourceDirBuildDir() ? "-I." : super.buildIncludesSection(boardConfiguration);
+    }
+    
+    @Override
+    protected List<Path> getIncludeDirPaths( BoardConfiguration boardConfiguration ) {
         if ( sourceDir != null ) {
-//            StringBuilder ret = new StringBuilder();            
-//            ret.append(" \"-I").append(sourceDir.toString()).append("\"");
-//            return ret.toString();
-            return "-I.";
+            List <Path> ret = new ArrayList<>();
+            ret.add( sourceDir.toAbsolutePath() );
+            return ret;
         } else {
-            return super.buildIncludesSection(boardConfiguration);
+            return super.getIncludeDirPaths(boardConfiguration);
         }
     }
     
@@ -142,22 +264,60 @@ public class LibCoreBuilder extends AbstractMakeAssistant {
     //*************************************************
     //*************** PRIVATE METHODS *****************
     //*************************************************
-    private void copySourceFiles() throws IOException {
-        Files.walkFileTree(sourceDir, new CopyingFileVisitor(sourceDir, buildDirPath));
-    }
-    
-    private static void updateMakefile(Path makefilePath, GCCToolFinder toolFinder) throws IOException {
-        throw new UnsupportedOperationException("Updating a Makefile is not supported yet!");
-//        Path compilerPath = toolFinder.findTool( LanguageTool.CCCompiler );
-//        List<String> makefileLines = Files.readAllLines(makefilePath);
-//        for ( int i=0; i<makefileLines.size(); i++ ) {
-//            String line = makefileLines.get(i).trim();
-//            if ( line.startsWith( TOOLS_DIR ) ) {
-//                makefileLines.set( i, TOOLS_DIR + "=" + compilerPath.getParent().toString() );
-//                break;
-//            }
-//        }
-//        Files.write(makefilePath, makefileLines);
+
+    // The Makefile contains the resolved compilation and archiver recipes as well as the toolchain location 
+    // so together with the compiler identity and the core sources it fully determines the built library
+    private String createCacheKey() throws IOException {
+        ContentHasher hasher = new ContentHasher();
+        hasher.update( boardConfiguration.getFqbn() );
+        // A source directory outside of the build directory is project specific:
+        String sourceDirText = sourceDir != null ? sourceDir.toAbsolutePath().toString() : null;
+        getMakefileContents().forEach( line -> hasher.update( sourceDirText != null ? line.replace( sourceDirText, "{source_dir}" ) : line ) );
+        hasher.updateFileIdentity( toolFinder.findTool( LanguageTool.CCCompiler ) );
+        
+        Set <Path> sourceDirPaths = new LinkedHashSet<>();
+        if ( sourceDir != null ) {
+            sourceDirPaths.add( sourceDir );
+        } else {
+            sourceDirPaths.add( boardConfiguration.getCoreDirectoryPath() );
+            sourceDirPaths.add( boardConfiguration.getVariantPath() );
+        }
+        for ( Path sourceDirPath : sourceDirPaths ) {
+            List <Path> filePaths;
+            try (Stream<Path> stream = Files.walk(sourceDirPath)) {
+                // The source directory may also be the output directory
+                filePaths = stream
+                    .filter( p -> Files.isRegularFile(p) && !p.startsWith( getObjectDirPath() ) && !p.equals( getMakefilePath() ) && !p.equals( libCorePath ) )
+                    .sorted()
+                    .collect( Collectors.toList() );
+            }
+            for ( Path filePath : filePaths ) {
+                hasher.update( sourceDirPath.relativize(filePath).toString() );
+                hasher.updateFileContents( filePath );
+            }
+        }
+        return hasher.toHexString();
+    }
+    
+    private boolean isSourceDirBuildDir() {
+        return sourceDir != null && buildDirPath != null && sourceDir.toAbsolutePath().normalize().equals( buildDirPath.toAbsolutePath().normalize() );
+    }
+    
+    private void updateMakefile( Path makefilePath ) throws IOException {
+        // Point the Makefile at the current toolchain. The file is only rewritten if the toolchain has changed 
+        // because all objects depend on the Makefile and would be recompiled otherwise.
+        String toolsDirLine = TOOLS_DIR_VARIABLE + "=" + getToolchainPath().toString();
+        List<String> makefileLines = Files.readAllLines(makefilePath);
+        for ( int i=0; i<makefileLines.size(); i++ ) {
+            String line = makefileLines.get(i).trim();
+            if ( line.startsWith( TOOLS_DIR_VARIABLE + "=" ) ) {
+                if ( !line.equals(toolsDirLine) ) {
+                    makefileLines.set( i, toolsDirLine );
+                    Files.write(makefilePath, makefileLines);
+                }
+                break;
+            }
+        }
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A content-addressed, on-disk cache of built core libraries shared by all imported projects.
+ *
+ * Keys are created by the {@link LibCoreBuilder} out of the board's FQBN, the generated Makefile
+ * (which contains the resolved compilation recipes and the toolchain location), the identity of
+ * the compiler executable and the contents of the core source tree.
+ * The total size of the cache is limited; least recently used entries are removed first.
+ */
+public class LibCoreCache {
+
+
+    public static final long DEFAULT_MAX_SIZE = 512L * 1024 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(LibCoreCache.class.getName());
+
+    private final Path cacheDirPath;
+    private final long maxSize;
+
+
+    public LibCoreCache( Path cacheDirPath ) {
+        this( cacheDirPath, DEFAULT_MAX_SIZE );
+    }
+
+    public LibCoreCache( Path cacheDirPath, long maxSize ) {
+        if ( cacheDirPath == null ) throw new IllegalArgumentException("cacheDirPath cannot be null");
+        if ( maxSize < 1 ) throw new IllegalArgumentException("maxSize must be greater than 0");
+        this.cacheDirPath = cacheDirPath;
+        this.maxSize = maxSize;
+    }
+
+    public Path getCacheDirPath() {
+        return cacheDirPath;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Copies a cached library to the target path.
+     *
+     * @return true if there was a cache entry for the key
+     */
+    public boolean restore( String key, Path targetLibCorePath ) {
+        Path entryPath = getEntryPath(key);
+        if ( !Files.exists(entryPath) ) {
+            return false;
+        }
+        try {
+            Files.copy( entryPath, targetLibCorePath, StandardCopyOption.REPLACE_EXISTING );
+            Files.setLastModifiedTime( entryPath, FileTime.fromMillis( System.currentTimeMillis() ) );
+            LOGGER.log( Level.INFO, "Restored {0} from the core library cache", targetLibCorePath.getFileName() );
+            return true;
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to restore core library cache entry: " + entryPath, ex );
+            return false;
+        }
+    }
+
+    public void store( String key, Path libCorePath ) {
+        try {
+            Files.createDirectories(cacheDirPath);
+            // Copy to a temporary file first so that a concurrent import never sees a partial entry:
+            Path tempEntryPath = Files.createTempFile(cacheDirPath, key, ".tmp");
+            Files.copy( libCorePath, tempEntryPath, StandardCopyOption.REPLACE_EXISTING );
+            Files.move( tempEntryPath, getEntryPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+            trim();
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to store " + libCorePath + " in the core library cache", ex );
+        }
+    }
+
+    public void trim() throws IOException {
+        if ( !Files.exists(cacheDirPath) ) return;
+        List <Path> entryPaths;
+        try (Stream<Path> stream = Files.list(cacheDirPath)) {
+            entryPaths = stream
+                .filter( p -> p.getFileName().toString().endsWith(LibCoreBuilder.LIB_CORE_FILENAME) )
+                .collect( Collectors.toCollection( ArrayList::new ) );
+        }
+
+        long totalSize = 0;
+        for ( Path entryPath : entryPaths ) {
+            totalSize += Files.size(entryPath);
+        }
+        if ( totalSize <= maxSize ) return;
+
+        entryPaths.sort( Comparator.comparingLong( LibCoreCache::getLastModifiedTime ) );
+        for ( Path entryPath : entryPaths ) {
+            if ( totalSize <= maxSize ) break;
+            long size = Files.size(entryPath);
+            Files.deleteIfExists(entryPath);
+            totalSize -= size;
+            LOGGER.log( Level.INFO, "Removed least recently used core library cache entry: {0}", entryPath.getFileName() );
+        }
+    }
+
+    public void clear() throws IOException {
+        if ( Files.exists(cacheDirPath) ) {
+            Files.walkFileTree(cacheDirPath, new DeletingFileVisitor());
+        }
+    }
+
+
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private Path getEntryPath( String key ) {
+        return cacheDirPath.resolve( key + "-" + LibCoreBuilder.LIB_CORE_FILENAME );
+    }
+
+    private static long getLastModifiedTime( Path path ) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+}
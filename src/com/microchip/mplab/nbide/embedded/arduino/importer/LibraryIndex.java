@@ -0,0 +1,428 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A persistent index that maps header file names to the libraries that provide them.
+ *
+ * The index covers the built-in libraries, the platform's own libraries and the sketchbook libraries. 
+ * For every library it records the headers found in its source directory together with the architectures 
+ * declared in library.properties. {@link #refresh(Map)} only lists the libraries of a directory whose 
+ * modification time has changed and only reads the libraries whose own modification times have changed.
+ */
+public class LibraryIndex {
+
+    
+    /**
+     * The location of a libraries directory. When several libraries provide the same header, 
+     * libraries from later locations take precedence.
+     */
+    public static enum Location {
+        BUILT_IN, PLATFORM, SKETCHBOOK
+    }
+    
+    public static final String LIBRARY_PROPERTIES_FILENAME = "library.properties";
+    
+    private static final Logger LOGGER = Logger.getLogger(LibraryIndex.class.getName());
+    private static final int MAGIC = 0x414C4958;  // "ALIX"
+    private static final int FORMAT_VERSION = 1;
+    private static final String ANY_ARCHITECTURE = "*";
+    private static final List <String> HEADER_EXTENSIONS = Arrays.asList(".h", ".hh", ".hpp");
+    
+    private final Path indexFilePath;
+    private Map <Path,LibrariesDirectory> librariesDirectories;
+    private Map <String,List<Library>> headerNamesToLibrariesLookup = Collections.emptyMap();
+    private Map <Path,Library> rootPathsToLibrariesLookup = Collections.emptyMap();
+    
+    
+    public LibraryIndex( Path indexFilePath ) {
+        if ( indexFilePath == null ) throw new IllegalArgumentException("indexFilePath cannot be null");
+        this.indexFilePath = indexFilePath;
+    }
+
+    public Path getIndexFilePath() {
+        return indexFilePath;
+    }
+    
+    /**
+     * Brings the index up to date with the given libraries directories. Directories that do not exist are ignored.
+     * The index is saved if anything has changed.
+     */
+    public synchronized void refresh( Map<Location,Path> librariesDirPaths ) {
+        if ( librariesDirectories == null ) {
+            librariesDirectories = load();
+        }
+        boolean modified = false;
+        Map <Path,LibrariesDirectory> refreshedDirectories = new LinkedHashMap<>();
+        for ( Map.Entry<Location,Path> e : new EnumMap<>(librariesDirPaths).entrySet() ) {
+            Path librariesDirPath = e.getValue().toAbsolutePath().normalize();
+            if ( !Files.isDirectory(librariesDirPath) ) {
+                continue;
+            }
+            try {
+                LibrariesDirectory librariesDirectory = librariesDirectories.get(librariesDirPath);
+                LibrariesDirectory refreshedDirectory = refreshDirectory( librariesDirPath, e.getKey(), librariesDirectory );
+                modified |= (refreshedDirectory != librariesDirectory);
+                refreshedDirectories.put( librariesDirPath, refreshedDirectory );
+            } catch (IOException ex) {
+                LOGGER.log( Level.WARNING, "Failed to index libraries in " + librariesDirPath, ex );
+            }
+        }
+        modified |= !refreshedDirectories.keySet().equals( librariesDirectories.keySet() );
+        librariesDirectories = refreshedDirectories;
+        buildLookups();
+        if ( modified ) {
+            save();
+        }
+    }
+    
+    /**
+     * @param headerName the name used in an #include directive, e.g. "SPI.h"
+     * @param architecture the architecture of the platform the sketch is built for
+     * @return the library that would be picked for the header: a library whose name matches the header is preferred, 
+     * then a library that explicitly supports the architecture and finally a library from a location with a higher precedence
+     */
+    public synchronized Optional<Library> findLibrary( String headerName, String architecture ) {
+        List <Library> candidates = headerNamesToLibrariesLookup.get(headerName);
+        if ( candidates == null ) {
+            return Optional.empty();
+        }
+        String headerBaseName = headerName.contains(".") ? headerName.substring( 0, headerName.lastIndexOf('.') ) : headerName;
+        return candidates.stream()
+            .filter( library -> library.isCompatibleWith(architecture) )
+            .max( Comparator
+                .comparing( (Library library) -> library.getName().equals(headerBaseName) )
+                .thenComparing( library -> library.getArchitectures().contains(architecture) )
+                .thenComparing( Library::getLocation )
+            );
+    }
+    
+    /**
+     * @return all indexed libraries that provide the header, in no particular order
+     */
+    public synchronized List<Library> findLibraries( String headerName ) {
+        return new ArrayList<>( headerNamesToLibrariesLookup.getOrDefault( headerName, Collections.emptyList() ) );
+    }
+    
+    /**
+     * @return the library the given file belongs to
+     */
+    public synchronized Optional<Library> findLibraryContaining( Path filePath ) {
+        for ( Path p = filePath.toAbsolutePath().normalize(); p != null; p = p.getParent() ) {
+            Library library = rootPathsToLibrariesLookup.get(p);
+            if ( library != null ) {
+                return Optional.of(library);
+            }
+        }
+        return Optional.empty();
+    }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private LibrariesDirectory refreshDirectory( Path librariesDirPath, Location location, LibrariesDirectory librariesDirectory ) throws IOException {
+        long lastModifiedTime = Files.getLastModifiedTime(librariesDirPath).toMillis();
+        List <Path> libraryRootPaths;
+        if ( librariesDirectory != null && librariesDirectory.location == location && librariesDirectory.lastModifiedTime == lastModifiedTime ) {
+            // No library has been added or removed:
+            libraryRootPaths = librariesDirectory.libraries.stream().map( Library::getRootPath ).collect( Collectors.toList() );
+        } else {
+            try (Stream<Path> stream = Files.list(librariesDirPath)) {
+                libraryRootPaths = stream.filter( Files::isDirectory ).collect( Collectors.toList() );
+            }
+        }
+        
+        Map <Path,Library> existingLibraries = new HashMap<>();
+        if ( librariesDirectory != null && librariesDirectory.location == location ) {
+            librariesDirectory.libraries.forEach( library -> existingLibraries.put( library.getRootPath(), library ) );
+        }
+        
+        boolean modified = (librariesDirectory == null || librariesDirectory.lastModifiedTime != lastModifiedTime);
+        List <Library> libraries = new ArrayList<>();
+        for ( Path libraryRootPath : libraryRootPaths ) {
+            Library library = existingLibraries.get(libraryRootPath);
+            if ( library == null || !library.isUpToDate() ) {
+                LOGGER.log( Level.FINE, "Indexing library {0}", libraryRootPath );
+                library = readLibrary( libraryRootPath, location );
+                modified = true;
+            }
+            libraries.add( library );
+        }
+        modified |= libraries.size() != existingLibraries.size();
+        return modified ? new LibrariesDirectory( librariesDirPath, location, lastModifiedTime, libraries ) : librariesDirectory;
+    }
+    
+    private static Library readLibrary( Path libraryRootPath, Location location ) throws IOException {
+        Path propertiesFilePath = libraryRootPath.resolve( LIBRARY_PROPERTIES_FILENAME );
+        Path srcDirPath = libraryRootPath.resolve("src");
+        // Libraries in the 1.5 format keep their sources in "src", legacy libraries in the root directory:
+        Path sourceDirPath = Files.exists(propertiesFilePath) && Files.isDirectory(srcDirPath) ? srcDirPath : libraryRootPath;
+        
+        List <String> architectures = Collections.singletonList( ANY_ARCHITECTURE );
+        if ( Files.exists(propertiesFilePath) ) {
+            for ( String line : Files.readAllLines( propertiesFilePath, StandardCharsets.UTF_8 ) ) {
+                line = line.trim();
+                if ( line.startsWith("architectures=") ) {
+                    architectures = Arrays.stream( line.substring( line.indexOf('=') + 1 ).split(",") )
+                        .map( String::trim )
+                        .filter( a -> !a.isEmpty() )
+                        .collect( Collectors.toList() );
+                }
+            }
+        }
+        
+        List <String> headerNames;
+        try (Stream<Path> stream = Files.list(sourceDirPath)) {
+            headerNames = stream
+                .map( p -> p.getFileName().toString() )
+                .filter( n -> HEADER_EXTENSIONS.stream().anyMatch( n::endsWith ) )
+                .collect( Collectors.toList() );
+        }
+        return new Library( libraryRootPath, sourceDirPath, location, architectures, headerNames, getStamp(libraryRootPath, sourceDirPath, propertiesFilePath) );
+    }
+    
+    // The directory modification times change when headers are added or removed
+    private static long getStamp( Path libraryRootPath, Path sourceDirPath, Path propertiesFilePath ) throws IOException {
+        long ret = Files.getLastModifiedTime(libraryRootPath).toMillis();
+        if ( !sourceDirPath.equals(libraryRootPath) ) {
+            ret = 31 * ret + Files.getLastModifiedTime(sourceDirPath).toMillis();
+        }
+        if ( Files.exists(propertiesFilePath) ) {
+            ret = 31 * ret + Files.getLastModifiedTime(propertiesFilePath).toMillis();
+        }
+        return ret;
+    }
+    
+    private void buildLookups() {
+        Map <String,List<Library>> headersLookup = new HashMap<>();
+        Map <Path,Library> rootPathsLookup = new HashMap<>();
+        librariesDirectories.values().forEach( librariesDirectory -> {
+            librariesDirectory.libraries.forEach( library -> {
+                rootPathsLookup.put( library.getRootPath(), library );
+                library.getHeaderNames().forEach( headerName -> headersLookup.computeIfAbsent( headerName, k -> new ArrayList<>() ).add( library ) );
+            });
+        });
+        headerNamesToLibrariesLookup = headersLookup;
+        rootPathsToLibrariesLookup = rootPathsLookup;
+    }
+    
+    private Map <Path,LibrariesDirectory> load() {
+        Map <Path,LibrariesDirectory> ret = new LinkedHashMap<>();
+        if ( !Files.exists(indexFilePath) ) {
+            return ret;
+        }
+        try (FileChannel channel = FileChannel.open(indexFilePath, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+            if ( buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION ) {
+                LOGGER.log( Level.INFO, "Ignoring library index with an unknown format: {0}", indexFilePath );
+                return ret;
+            }
+            int directoryCount = buffer.getInt();
+            for ( int i=0; i<directoryCount; i++ ) {
+                Path librariesDirPath = Paths.get( readString(buffer) );
+                Location location = Location.values()[ buffer.getInt() ];
+                long lastModifiedTime = buffer.getLong();
+                int libraryCount = buffer.getInt();
+                List <Library> libraries = new ArrayList<>(libraryCount);
+                for ( int j=0; j<libraryCount; j++ ) {
+                    Path libraryRootPath = librariesDirPath.resolve( readString(buffer) );
+                    Path sourceDirPath = libraryRootPath.resolve( readString(buffer) );
+                    long stamp = buffer.getLong();
+                    List <String> architectures = readStrings(buffer);
+                    List <String> headerNames = readStrings(buffer);
+                    libraries.add( new Library( libraryRootPath, sourceDirPath, location, architectures, headerNames, stamp ) );
+                }
+                ret.put( librariesDirPath, new LibrariesDirectory( librariesDirPath, location, lastModifiedTime, libraries ) );
+            }
+            return ret;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException | ArrayIndexOutOfBoundsException ex) {
+            LOGGER.log( Level.WARNING, "Failed to load the library index: " + indexFilePath, ex );
+            return new LinkedHashMap<>();
+        }
+    }
+    
+    private void save() {
+        try {
+            Files.createDirectories( indexFilePath.getParent() );
+            // Write to a temporary file first so that a concurrent reader never sees a partial index:
+            Path tempFilePath = Files.createTempFile( indexFilePath.getParent(), indexFilePath.getFileName().toString(), ".tmp" );
+            try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream(tempFilePath) ) )) {
+                out.writeInt( MAGIC );
+                out.writeInt( FORMAT_VERSION );
+                out.writeInt( librariesDirectories.size() );
+                for ( LibrariesDirectory librariesDirectory : librariesDirectories.values() ) {
+                    writeString( out, librariesDirectory.path.toString() );
+                    out.writeInt( librariesDirectory.location.ordinal() );
+                    out.writeLong( librariesDirectory.lastModifiedTime );
+                    out.writeInt( librariesDirectory.libraries.size() );
+                    for ( Library library : librariesDirectory.libraries ) {
+                        writeString( out, library.getName() );
+                        writeString( out, library.getRootPath().relativize( library.getSourceDirPath() ).toString() );
+                        out.writeLong( library.stamp );
+                        writeStrings( out, library.getArchitectures() );
+                        writeStrings( out, library.getHeaderNames() );
+                    }
+                }
+            }
+            Files.move( tempFilePath, indexFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to save the library index: " + indexFilePath, ex );
+        }
+    }
+    
+    private static String readString( ByteBuffer buffer ) {
+        int length = buffer.getInt();
+        if ( length < 0 || length > buffer.remaining() ) throw new IllegalArgumentException("Corrupted string length: " + length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+    
+    private static List <String> readStrings( ByteBuffer buffer ) {
+        int size = buffer.getInt();
+        if ( size < 0 ) throw new IllegalArgumentException("Corrupted list size: " + size);
+        List <String> ret = new ArrayList<>(size);
+        for ( int i=0; i<size; i++ ) {
+            ret.add( readString(buffer) );
+        }
+        return ret;
+    }
+    
+    private static void writeString( DataOutputStream out, String value ) throws IOException {
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+    
+    private static void writeStrings( DataOutputStream out, List<String> values ) throws IOException {
+        out.writeInt( values.size() );
+        for ( String value : values ) {
+            writeString( out, value );
+        }
+    }
+    
+    
+    public static final class Library {
+        
+        private final Path rootPath;
+        private final Path sourceDirPath;
+        private final Location location;
+        private final List <String> architectures;
+        private final List <String> headerNames;
+        private final long stamp;
+
+        Library( Path rootPath, Path sourceDirPath, Location location, List<String> architectures, List<String> headerNames, long stamp ) {
+            this.rootPath = rootPath;
+            this.sourceDirPath = sourceDirPath;
+            this.location = location;
+            this.architectures = Collections.unmodifiableList( new ArrayList<>(architectures) );
+            this.headerNames = Collections.unmodifiableList( new ArrayList<>(headerNames) );
+            this.stamp = stamp;
+        }
+
+        public String getName() {
+            return rootPath.getFileName().toString();
+        }
+        
+        public Path getRootPath() {
+            return rootPath;
+        }
+
+        /**
+         * @return the directory the library's headers are included from: "src" for libraries in the 1.5 format, 
+         * otherwise the root directory
+         */
+        public Path getSourceDirPath() {
+            return sourceDirPath;
+        }
+
+        public Location getLocation() {
+            return location;
+        }
+
+        public List<String> getArchitectures() {
+            return architectures;
+        }
+
+        public List<String> getHeaderNames() {
+            return headerNames;
+        }
+        
+        public boolean isCompatibleWith( String architecture ) {
+            return architectures.contains(ANY_ARCHITECTURE) || architectures.stream().anyMatch( a -> a.equalsIgnoreCase(architecture) );
+        }
+        
+        boolean isUpToDate() {
+            try {
+                return Files.isDirectory(rootPath) && stamp == getStamp( rootPath, sourceDirPath, rootPath.resolve(LIBRARY_PROPERTIES_FILENAME) );
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Library{ name=" + getName() + ", location=" + location + ", architectures=" + architectures + '}';
+        }
+        
+    }
+    
+    private static final class LibrariesDirectory {
+        
+        private final Path path;
+        private final Location location;
+        private final long lastModifiedTime;
+        private final List <Library> libraries;
+
+        LibrariesDirectory( Path path, Location location, long lastModifiedTime, List<Library> libraries ) {
+            this.path = path;
+            this.location = location;
+            this.lastModifiedTime = lastModifiedTime;
+            this.libraries = libraries;
+        }
+        
+    }
+    
+}
@@ -47,8 +47,12 @@ public class NativeProcessRunner {
     }
     
     public String getNativeProcessCommandString() {
+        return createCommandString( processBuilder.command() );
+    }
+    
+    public static String createCommandString( List <String> command ) {
         final StringBuilder commandBuilder = new StringBuilder();
-        processBuilder.command().forEach( entry -> {
+        command.forEach( entry -> {
             if ( entry.startsWith("-") ) {
                 commandBuilder.append(entry).append(' ');
             } else {
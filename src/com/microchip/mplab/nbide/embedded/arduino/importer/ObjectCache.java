@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import com.microchip.mplab.nbide.embedded.arduino.utils.ContentHasher;
+import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of compiled object files shared by all builds, similar to ccache in "direct" mode.
+ *
+ * Keys are created out of the compilation command (with the project specific source and include paths left out), 
+ * the identity of the compiler executable and the names and contents of the source file and all headers it includes. 
+ * Objects with debug information contain the compilation directory and the paths of the sources, so like ccache's 
+ * "hash_dir" their keys include the build directory and the full paths instead.
+ * The total size of the cache is limited; least recently used entries are removed first by {@link #trim()}.
+ */
+public class ObjectCache {
+
+
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(ObjectCache.class.getName());
+    private static final String ENTRY_EXTENSION = ".o";
+
+    private final Path cacheDirPath;
+    private final long maxSize;
+
+
+    public ObjectCache( Path cacheDirPath ) {
+        this( cacheDirPath, DEFAULT_MAX_SIZE );
+    }
+
+    public ObjectCache( Path cacheDirPath, long maxSize ) {
+        if ( cacheDirPath == null ) throw new IllegalArgumentException("cacheDirPath cannot be null");
+        if ( maxSize < 1 ) throw new IllegalArgumentException("maxSize must be greater than 0");
+        this.cacheDirPath = cacheDirPath;
+        this.maxSize = maxSize;
+    }
+
+    public Path getCacheDirPath() {
+        return cacheDirPath;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public String createKey( String command, Path compilerPath, Path sourceFilePath, List<Path> dependencyPaths ) throws IOException {
+        return createKey( command, compilerPath, sourceFilePath, dependencyPaths, false );
+    }
+
+    /**
+     * @param command the compilation command with the project specific paths replaced by placeholders
+     * @param compilerPath the compiler executable, identified by its size and modification time
+     * @param sourceFilePath the compiled file
+     * @param dependencyPaths all headers the source file includes, directly or indirectly
+     * @param hashPaths true if the object contains the paths of the source file and the headers (debug information). 
+     * The full paths are part of the key then, otherwise only the file names are.
+     */
+    public String createKey( String command, Path compilerPath, Path sourceFilePath, List<Path> dependencyPaths, boolean hashPaths ) throws IOException {
+        ContentHasher hasher = new ContentHasher();
+        hasher.update( command );
+        hasher.updateFileIdentity( compilerPath );
+        hasher.update( getHashedPath( sourceFilePath, hashPaths ) ).updateFileContents( sourceFilePath );
+        for ( Path dependencyPath : dependencyPaths ) {
+            hasher.update( getHashedPath( dependencyPath, hashPaths ) ).updateFileContents( dependencyPath );
+        }
+        return hasher.toHexString();
+    }
+
+    /**
+     * Copies a cached object file to the target path.
+     *
+     * @return true if there was a cache entry for the key
+     */
+    public boolean restore( String key, Path targetObjectFilePath ) {
+        Path entryPath = getEntryPath(key);
+        if ( !Files.exists(entryPath) ) {
+            return false;
+        }
+        try {
+            Files.createDirectories( targetObjectFilePath.getParent() );
+            Files.copy( entryPath, targetObjectFilePath, StandardCopyOption.REPLACE_EXISTING );
+            Files.setLastModifiedTime( entryPath, FileTime.fromMillis( System.currentTimeMillis() ) );
+            return true;
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to restore object cache entry: " + entryPath, ex );
+            return false;
+        }
+    }
+
+    public void store( String key, Path objectFilePath ) {
+        try {
+            Files.createDirectories(cacheDirPath);
+            // Copy to a temporary file first so that a concurrent build never sees a partial entry:
+            Path tempEntryPath = Files.createTempFile(cacheDirPath, key, ".tmp");
+            Files.copy( objectFilePath, tempEntryPath, StandardCopyOption.REPLACE_EXISTING );
+            Files.move( tempEntryPath, getEntryPath(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to store " + objectFilePath + " in the object cache", ex );
+        }
+    }
+
+    public void trim() throws IOException {
+        if ( !Files.exists(cacheDirPath) ) return;
+        List <Path> entryPaths;
+        try (Stream<Path> stream = Files.list(cacheDirPath)) {
+            entryPaths = stream
+                .filter( p -> p.getFileName().toString().endsWith(ENTRY_EXTENSION) )
+                .collect( Collectors.toCollection( ArrayList::new ) );
+        }
+
+        long totalSize = 0;
+        for ( Path entryPath : entryPaths ) {
+            totalSize += Files.size(entryPath);
+        }
+        if ( totalSize <= maxSize ) return;
+
+        entryPaths.sort( Comparator.comparingLong( ObjectCache::getLastModifiedTime ) );
+        int removedEntryCount = 0;
+        for ( Path entryPath : entryPaths ) {
+            if ( totalSize <= maxSize ) break;
+            long size = Files.size(entryPath);
+            Files.deleteIfExists(entryPath);
+            totalSize -= size;
+            removedEntryCount++;
+        }
+        LOGGER.log( Level.INFO, "Removed {0} least recently used object cache entries", removedEntryCount );
+    }
+
+    public void clear() throws IOException {
+        if ( Files.exists(cacheDirPath) ) {
+            Files.walkFileTree(cacheDirPath, new DeletingFileVisitor());
+        }
+    }
+
+
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private static String getHashedPath( Path filePath, boolean fullPath ) {
+        return fullPath ? filePath.toAbsolutePath().normalize().toString() : filePath.getFileName().toString();
+    }
+    
+    private Path getEntryPath( String key ) {
+        return cacheDirPath.resolve( key + ENTRY_EXTENSION );
+    }
+
+    private static long getLastModifiedTime( Path path ) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+}
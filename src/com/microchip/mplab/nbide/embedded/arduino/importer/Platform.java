@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -23,18 +24,26 @@ public class Platform extends ArduinoDataSource {
     public static final String BOARDS_FILENAME = "boards.txt";
     public static final String VARIANTS_DIRNAME = "variants";
 
+    private static final String MENU_PREFIX = "menu.";
+
     private final String vendor;
     private final String architecture;
     private final Path rootPath;
 
-    private final Map<String, String> boardNamesToIdsLookup = new HashMap<>();
+    private BoardsIndex boardsIndex;
 
     public Platform(Platform parent, String vendor, String architecture, Path rootPath) throws IOException {
-        super(parent);
+        this(parent, vendor, architecture, rootPath, parseDataFile(rootPath.resolve(PLATFORM_FILENAME)));
+    }
+
+    /**
+     * Creates a platform out of already parsed platform.txt data. The data is copied.
+     */
+    public Platform(Platform parent, String vendor, String architecture, Path rootPath, Map<String, String> platformData) {
+        super(parent, new HashMap<>(platformData));
         this.vendor = vendor;
         this.architecture = architecture;
         this.rootPath = rootPath;
-        this.data = parseDataFile(PLATFORM_FILENAME);
     }
 
     public Platform getParent() {
@@ -78,34 +87,11 @@ public class Platform extends ArduinoDataSource {
     }
 
     public Map<String, String> getBoardNamesToIDsLookup() {
-        if (boardNamesToIdsLookup.isEmpty()) {
-            try (Stream<String> lines = Files.lines(rootPath.resolve(BOARDS_FILENAME))) {
-                return lines
-                        .map(line -> line.trim())
-                        .filter(line -> !line.isEmpty() && !line.startsWith("#") && !line.startsWith("menu."))
-                        .map(line -> {
-                            int splitIndex = line.indexOf("=");
-                            String key = line.substring(0, splitIndex).trim();
-                            String value = line.substring(splitIndex + 1);
-                            String[] keyParts = key.split("\\.");
-                            if (key.endsWith(".name") && keyParts.length == 2) {
-                                return new String[]{value.trim(),keyParts[0]};
-                            } else {
-                                return null;
-                            }
-                        })
-                        .filter(Objects::nonNull)
-                        .collect(Collectors.toMap(
-                                tokens -> tokens[0],
-                                tokens -> tokens.length > 1 ? tokens[1] : "",
-                                (val1, val2) -> val2
-                        ));
-            } catch (IOException ex) {
-                Exceptions.printStackTrace(ex);
-                return Collections.EMPTY_MAP;
-            }
-        } else {
-            return Collections.unmodifiableMap(boardNamesToIdsLookup);
+        try {
+            return getBoardsIndex().boardNamesToIdsLookup;
+        } catch (IOException ex) {
+            Exceptions.printStackTrace(ex);
+            return Collections.EMPTY_MAP;
         }
     }
 
@@ -114,46 +100,46 @@ public class Platform extends ArduinoDataSource {
     }
 
     public Optional<Board> getBoard(String boardId) {
-        Set<BoardOption> allAvailableOptions = new HashSet<>();
-        Map<String, String> boardData = new HashMap<>();
-
-        try (Stream<String> lines = Files.lines(rootPath.resolve(BOARDS_FILENAME))) {
-            lines
-                    .map(line -> line.trim())
-                    .filter(line -> !line.isEmpty() && !line.startsWith("#"))
-                    .forEach(line -> {
-                        String[] keyValue = line.split("=");
-                        String key = keyValue[0];
-                        String value = keyValue.length > 1 ? keyValue[1] : "";
-                        if (key.startsWith("menu.")) {
-                            allAvailableOptions.add(new BoardOption(key, value));
-                        } else if (key.startsWith(boardId)) {
-                            int firstDotIndex = key.indexOf(".");
-                            String boardValueId = key.substring(firstDotIndex + 1);
-                            boardData.put(boardValueId, value);
-                        }
-                    });
+        BoardsIndex index;
+        try {
+            index = getBoardsIndex();
         } catch (IOException ex) {
             Exceptions.printStackTrace(ex);
             return Optional.empty();
         }
 
+        Map<String, String> boardData = index.boardIdsToDataLookup.get(boardId);
+        if (boardData == null) {
+            return Optional.empty();
+        }
+
+        // Board option values are the keys with exactly one part after the option id, e.g. "menu.cpu.atmega328":
         Map<BoardOption,Set<String>> boardOptions = new HashMap<>();
         boardData.keySet().forEach(key -> {
-            allAvailableOptions.forEach((BoardOption opt) -> {
-                if (key.contains(opt.getId())) {
+            if (key.startsWith(MENU_PREFIX)) {
+                int optionIdEndIndex = key.indexOf('.', MENU_PREFIX.length());
+                BoardOption opt = optionIdEndIndex != -1 ? index.optionIdsToOptionsLookup.get( key.substring(0, optionIdEndIndex) ) : null;
+                if (opt != null) {
                     Set<String> optionValues = boardOptions.computeIfAbsent(opt, k -> new HashSet<>());
-                    String shortKey = key.substring(opt.getId().length()+1);
-                    String[] shortKeyParts = shortKey.split("\\.");
-                    if ( shortKeyParts.length == 1 ) {
-                        String optionValue = shortKey;
-                        optionValues.add(optionValue);
+                    String shortKey = key.substring(optionIdEndIndex + 1);
+                    if (shortKey.indexOf('.') == -1) {
+                        optionValues.add(shortKey);
                     }
                 }
-            });
+            }
         });
 
-        return Optional.of(new Board(this, boardId, boardData, boardOptions));
+        // Board modifies its data so it gets a copy. It is frozen afterwards so that it can be shared by concurrent imports:
+        Board board = new Board(this, boardId, new HashMap<>(boardData), boardOptions);
+        board.freeze();
+        return Optional.of(board);
+    }
+
+    /**
+     * Sets already parsed boards.txt data. It is used as long as the file's modification time does not change.
+     */
+    synchronized void preloadBoardsIndex(long lastModifiedTime, Map<String, String> boardsFileData) {
+        boardsIndex = new BoardsIndex(lastModifiedTime, boardsFileData);
     }
 
     @Override
@@ -197,8 +183,18 @@ public class Platform extends ArduinoDataSource {
     // ***************************************
     // ********** PRIVATE METHODS ************
     // ***************************************    
-    private Map<String, String> parseDataFile(String filename) throws IOException {
-        try (Stream<String> lines = Files.lines(rootPath.resolve(filename))) {
+    private synchronized BoardsIndex getBoardsIndex() throws IOException {
+        Path boardsFilePath = getBoardsFilePath();
+        long lastModifiedTime = Files.getLastModifiedTime(boardsFilePath).toMillis();
+        if (boardsIndex == null || boardsIndex.lastModifiedTime != lastModifiedTime) {
+            LOGGER.log(Level.FINE, "Indexing {0}", boardsFilePath);
+            boardsIndex = new BoardsIndex(lastModifiedTime, parseDataFile(boardsFilePath));
+        }
+        return boardsIndex;
+    }
+
+    static Map<String, String> parseDataFile(Path filePath) throws IOException {
+        try (Stream<String> lines = Files.lines(filePath)) {
             return lines
                     .map(line -> line.trim())
                     .filter(line -> !line.isEmpty() && !line.startsWith("#"))
@@ -214,4 +210,39 @@ public class Platform extends ArduinoDataSource {
         }
     }
 
+
+    // boards.txt split by board id, built in a single pass
+    private static final class BoardsIndex {
+
+        private final long lastModifiedTime;
+        private final Map<String, Map<String, String>> boardIdsToDataLookup = new HashMap<>();
+        private final Map<String, BoardOption> optionIdsToOptionsLookup = new HashMap<>();
+        private final Map<String, String> boardNamesToIdsLookup;
+
+        BoardsIndex(long lastModifiedTime, Map<String, String> boardsFileData) {
+            this.lastModifiedTime = lastModifiedTime;
+            Map<String, String> namesToIds = new HashMap<>();
+            boardsFileData.forEach((key, value) -> {
+                int firstDotIndex = key.indexOf('.');
+                if (firstDotIndex == -1) {
+                    return;
+                }
+                if (key.startsWith(MENU_PREFIX)) {
+                    // Menu declaration, e.g. "menu.cpu=Processor"
+                    optionIdsToOptionsLookup.put(key, new BoardOption(key, value));
+                    return;
+                }
+                String boardId = key.substring(0, firstDotIndex);
+                String boardValueId = key.substring(firstDotIndex + 1);
+                boardIdsToDataLookup.computeIfAbsent(boardId, k -> new HashMap<>()).put(boardValueId, value);
+                if (boardValueId.equals("name")) {
+                    namesToIds.put(value.trim(), boardId);
+                }
+            });
+            boardIdsToDataLookup.replaceAll((boardId, boardData) -> CompactDataMap.of(boardData));
+            this.boardNamesToIdsLookup = Collections.unmodifiableMap(namesToIds);
+        }
+
+    }
+
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+/**
+ * Describes a platform that has been installed, updated or removed while the IDE is running.
+ */
+public final class PlatformChangeEvent {
+
+    
+    private final PlatformFactory source;
+    private final Platform oldPlatform;
+    private final Platform newPlatform;
+
+    
+    public PlatformChangeEvent( PlatformFactory source, Platform oldPlatform, Platform newPlatform ) {
+        this.source = source;
+        this.oldPlatform = oldPlatform;
+        this.newPlatform = newPlatform;
+    }
+
+    public PlatformFactory getSource() {
+        return source;
+    }
+
+    /**
+     * @return the platform that has been updated or removed, or null if a new platform has been installed
+     */
+    public Platform getOldPlatform() {
+        return oldPlatform;
+    }
+
+    /**
+     * @return the platform that has been installed or updated, or null if the platform has been removed
+     */
+    public Platform getNewPlatform() {
+        return newPlatform;
+    }
+
+    @Override
+    public String toString() {
+        return "PlatformChangeEvent{ oldPlatform=" + oldPlatform + ", newPlatform=" + newPlatform + '}';
+    }
+    
+}
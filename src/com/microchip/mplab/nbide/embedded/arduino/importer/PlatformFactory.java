@@ -5,40 +5,93 @@ import static com.microchip.mplab.nbide.embedded.arduino.importer.ArduinoConfig.
 import com.microchip.mplab.nbide.embedded.arduino.importer.pic32.PIC32Platform;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class PlatformFactory {
 
     public static final String BOARDS_FILENAME = "boards.txt";
     public static final String PLATFORM_FILENAME = "platform.txt";
 
+    private static final String PACKAGES_DIRNAME = "packages";
+    private static final String HARDWARE_DIRNAME = "hardware";
+    private static final Set<String> SKIPPED_DIRNAMES = new HashSet<>(Arrays.asList("staging", "tools", "tmp"));
+    // settings/hardware/{vendor}/{architecture}/{version}
+    private static final int CUSTOM_HARDWARE_SEARCH_DEPTH = 5;
+
     private static final Logger LOGGER = Logger.getLogger(PlatformFactory.class.getName());
 
-    private final List<Platform> allPlatforms = new ArrayList<>();
+    private static final ExecutorService INDEX_REFRESH_EXECUTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "Platform Index Refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static Platform sharedRootPlatform;
+
+    // Platforms may be replaced by the watcher thread while they are read by the UI
+    private final List<Platform> allPlatforms = new CopyOnWriteArrayList<>();
+    private final Map<Path, PlatformIndex.Entry> platformFilePathsToEntriesLookup = new ConcurrentHashMap<>();
+    private final List<PlatformChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private PlatformIndex platformIndex;
+    private PlatformWatcher platformWatcher;
+    private Path settingsPath;
 
-    public List<Platform> getAllPlatforms(Path arduinoSettingsPath) throws IOException {
+    public synchronized List<Platform> getAllPlatforms(Path arduinoSettingsPath) throws IOException {
         if (allPlatforms.isEmpty()) {
 
-            Path settingsPath = validateArduinoSettingsPath(arduinoSettingsPath);
+            settingsPath = validateArduinoSettingsPath(arduinoSettingsPath);
 
-            // Find all paths containing a "platform.txt" file
-            LOGGER.log(Level.INFO, "Searching for platform files in {0}", settingsPath);
-            FileFinder finder = new FileFinder(PLATFORM_FILENAME);
-            Files.walkFileTree(settingsPath, finder);
-            List<Path> platformPaths = finder.getMatchingPaths();
+            Platform rootPlatform = getRootPlatform();
 
-            Platform rootPlatform = createRootPlatform();
-            if (rootPlatform == null) {
-                throw new RuntimeException("Failed to load the root platform!");
+            Optional<List<PlatformIndex.Entry>> indexEntries = platformIndex != null ? platformIndex.load(settingsPath) : Optional.empty();
+            List<PlatformIndex.Entry> entries;
+            if (indexEntries.isPresent()) {
+                // Only platforms whose files have changed are parsed again, newly installed or removed platforms 
+                // are picked up by a refresh in the background that notifies the platform change listeners: 
+                LOGGER.log(Level.INFO, "Loaded {0} platforms from {1}", new Object[]{indexEntries.get().size(), platformIndex.getIndexFilePath()});
+                entries = updateIndexEntries(indexEntries.get(), indexEntries.get().stream().map(PlatformIndex.Entry::getPlatformFilePath).collect(Collectors.toList()));
+                // Up-to-date entries are reused as they are, so comparing lists of instances is enough:
+                if (!entries.equals(indexEntries.get())) {
+                    platformIndex.save(settingsPath, entries);
+                }
+            } else {
+                // Find all paths containing a "platform.txt" file
+                LOGGER.log(Level.INFO, "Searching for platform files in {0}", settingsPath);
+                entries = updateIndexEntries(Collections.emptyList(), findPlatformFilePaths(settingsPath));
+                if (platformIndex != null) {
+                    platformIndex.save(settingsPath, entries);
+                }
             }
 
-            platformPaths.stream().map(path -> createPlatformFromFile(rootPlatform, path)).forEach(allPlatforms::add);
+            entries.forEach(entry -> platformFilePathsToEntriesLookup.put(entry.getPlatformFilePath(), entry));
+            allPlatforms.addAll(entries.stream().map(entry -> createPlatformFromIndexEntry(rootPlatform, entry)).collect(Collectors.toList()));
 
             // Add the root platform but only if there is no platform in the user directory with the same vendor/arch:
             if (!allPlatforms.stream().anyMatch(
@@ -46,14 +99,29 @@ public final class PlatformFactory {
             )) {
                 allPlatforms.add(rootPlatform);
             }
+            if (indexEntries.isPresent()) {
+                scheduleIndexRefresh(settingsPath);
+            }
         }
 
         return Collections.unmodifiableList(allPlatforms);
     }
 
-    // TODO: Optimize single platform creation so that it is not necessary to create all platforms
+    /**
+     * Looks up a single platform. If all platforms have not been loaded yet, only the highest installed version 
+     * in "packages/{vendor}/hardware/{architecture}" is parsed. A full search is done only if that directory does not exist.
+     */
     public Platform createPlatform(Path arduinoSettingsPath, String vendor, String architecture) throws IOException {
         if (allPlatforms.isEmpty()) {
+            Path settingsPath = validateArduinoSettingsPath(arduinoSettingsPath);
+            Optional<Path> platformFilePath = findPlatformFilePath(settingsPath, vendor, architecture);
+            if (platformFilePath.isPresent()) {
+                PlatformIndex.Entry entry = createIndexEntry(platformFilePath.get());
+                return entry != null ? createPlatformFromIndexEntry(getRootPlatform(), entry) : null;
+            }
+            if (ROOT_PLATFORM_VENDOR.equalsIgnoreCase(vendor) && ROOT_PLATFORM_ARCH.equalsIgnoreCase(architecture)) {
+                return getRootPlatform();
+            }
             getAllPlatforms(arduinoSettingsPath);
         }
         for (Platform platform : allPlatforms) {
@@ -66,42 +134,364 @@ public final class PlatformFactory {
 
     public Platform createPlatformFromRootDirectory(Path platformRootPath) throws IOException {
         Path platformFilePath = platformRootPath.resolve(PLATFORM_FILENAME);
-        Platform rootPlatform = createRootPlatform();
-        return createPlatformFromFile(rootPlatform, platformFilePath);
+        Platform rootPlatform = getRootPlatform();
+        PlatformIndex.Entry entry = createIndexEntry(platformFilePath);
+        return entry != null ? createPlatformFromIndexEntry(rootPlatform, entry) : null;
+    }
+
+    public void addPlatformChangeListener(PlatformChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removePlatformChangeListener(PlatformChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts watching the "packages" directory. When a platform is installed, updated or removed, only that platform 
+     * is parsed again and the listeners are notified. Has no effect until {@link #getAllPlatforms(Path)} has been called.
+     */
+    public synchronized void startWatching() throws IOException {
+        if (platformWatcher != null || settingsPath == null) {
+            return;
+        }
+        Path packagesPath = settingsPath.resolve(PACKAGES_DIRNAME);
+        if (Files.isDirectory(packagesPath)) {
+            platformWatcher = new PlatformWatcher(packagesPath, HARDWARE_DIRNAME, this::reloadPlatforms);
+        }
+    }
+
+    public synchronized void stopWatching() {
+        if (platformWatcher != null) {
+            try {
+                platformWatcher.close();
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to stop the platform watcher", ex);
+            }
+            platformWatcher = null;
+        }
+    }
+
+    public PlatformIndex getPlatformIndex() {
+        return platformIndex;
+    }
+
+    /**
+     * @param platformIndex the snapshot used to create platforms without searching the settings directory 
+     * and parsing the platform files; can be null
+     */
+    public void setPlatformIndex(PlatformIndex platformIndex) {
+        this.platformIndex = platformIndex;
     }
 
     public boolean isValidPlatformRootPath(Path rootPath) {
         return rootPath != null && Files.exists(rootPath.resolve(PLATFORM_FILENAME));
     }
 
-    private static Platform createPlatformFromFile(Platform rootPlatform, Path platformFilePath) {
-        // Pattern: /home/user/.arduino15/packages/{vendor}/hardware/{architecture}/x.x.x/platform.txt
-        int hardwareIndex = -1;
+    /**
+     * Looks for platform files in the "packages/{vendor}/hardware/{architecture}/{version}" layout 
+     * (or "packages/{vendor}/hardware/{architecture}" for manually installed platforms) without walking 
+     * the whole settings directory. Other "hardware" directories are found by a shallow walk that skips 
+     * the packages, staging and tools directories.
+     */
+    private static List<Path> findPlatformFilePaths(Path settingsPath) throws IOException {
+        long startTime = System.currentTimeMillis();
+        AtomicInteger visitedDirCount = new AtomicInteger();
+        List<Path> ret = new ArrayList<>();
+
+        Path packagesPath = settingsPath.resolve(PACKAGES_DIRNAME);
+        for (Path vendorPath : listDirectories(packagesPath, visitedDirCount)) {
+            for (Path architecturePath : listDirectories(vendorPath.resolve(HARDWARE_DIRNAME), visitedDirCount)) {
+                Path platformFilePath = architecturePath.resolve(PLATFORM_FILENAME);
+                if (Files.exists(platformFilePath)) {
+                    ret.add(platformFilePath);
+                    continue;
+                }
+                for (Path versionPath : listDirectories(architecturePath, visitedDirCount)) {
+                    platformFilePath = versionPath.resolve(PLATFORM_FILENAME);
+                    if (Files.exists(platformFilePath)) {
+                        ret.add(platformFilePath);
+                    }
+                    visitedDirCount.incrementAndGet();
+                }
+            }
+        }
+
+        // Fallback for custom hardware folders:
+        Files.walkFileTree(settingsPath, EnumSet.noneOf(FileVisitOption.class), CUSTOM_HARDWARE_SEARCH_DEPTH, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                if (dir.equals(packagesPath) || (dir.getParent() != null && dir.getParent().equals(settingsPath) && SKIPPED_DIRNAMES.contains(dir.getFileName().toString()))) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                visitedDirCount.incrementAndGet();
+                Path platformFilePath = dir.resolve(PLATFORM_FILENAME);
+                if (Files.exists(platformFilePath) && findHardwareIndex(platformFilePath) != -1) {
+                    ret.add(platformFilePath);
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                LOGGER.log(Level.WARNING, "Failed to visit {0}", file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        LOGGER.log(Level.INFO, "Found {0} platform files in {1} ms after visiting {2} directories", new Object[]{ret.size(), System.currentTimeMillis() - startTime, visitedDirCount.get()});
+        return ret;
+    }
+
+    private static List<Path> listDirectories(Path dirPath, AtomicInteger visitedDirCount) throws IOException {
+        if (!Files.isDirectory(dirPath)) {
+            return Collections.emptyList();
+        }
+        visitedDirCount.incrementAndGet();
+        try (Stream<Path> stream = Files.list(dirPath)) {
+            return stream.filter(Files::isDirectory).sorted().collect(Collectors.toList());
+        }
+    }
+
+    // Returns -1 if the path does not match the "{vendor}/hardware/{architecture}/.../platform.txt" pattern
+    private static int findHardwareIndex(Path platformFilePath) {
         for (int i = platformFilePath.getNameCount() - 1; i >= 0; i--) {
-            if ("hardware".equalsIgnoreCase(platformFilePath.getName(i).toString())) {
-                hardwareIndex = i;
-                break;
+            if (HARDWARE_DIRNAME.equalsIgnoreCase(platformFilePath.getName(i).toString())) {
+                return (i >= 1 && i + 2 < platformFilePath.getNameCount()) ? i : -1;
             }
         }
+        return -1;
+    }
+
+    // Parses the platforms in an architecture directory that are new or have changed and removes the ones that no longer exist
+    private void reloadPlatforms(Path architecturePath) {
+        List<Path> platformFilePaths = new ArrayList<>();
+        if (Files.exists(architecturePath.resolve(PLATFORM_FILENAME))) {
+            platformFilePaths.add(architecturePath.resolve(PLATFORM_FILENAME));
+        } else {
+            try {
+                listDirectories(architecturePath, new AtomicInteger()).stream()
+                    .map(versionPath -> versionPath.resolve(PLATFORM_FILENAME))
+                    .filter(Files::exists)
+                    .forEach(platformFilePaths::add);
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to list " + architecturePath, ex);
+            }
+        }
+        updatePlatforms(path -> path.startsWith(architecturePath), platformFilePaths);
+    }
+
+    // Brings the platforms whose files match the filter in line with the given platform files and notifies the listeners
+    private void updatePlatforms(Predicate<Path> filter, List<Path> platformFilePaths) {
+        List<PlatformChangeEvent> events = new ArrayList<>();
+        synchronized (this) {
+            // Removed platforms:
+            new ArrayList<>(platformFilePathsToEntriesLookup.keySet()).stream()
+                .filter(path -> filter.test(path) && !platformFilePaths.contains(path))
+                .forEach(path -> {
+                    platformFilePathsToEntriesLookup.remove(path);
+                    findPlatform(path).ifPresent(platform -> {
+                        allPlatforms.remove(platform);
+                        events.add(new PlatformChangeEvent(this, platform, null));
+                    });
+                });
+
+            // New and updated platforms:
+            for (Path platformFilePath : platformFilePaths) {
+                PlatformIndex.Entry entry = platformFilePathsToEntriesLookup.get(platformFilePath);
+                if (entry != null && entry.isUpToDate()) {
+                    continue;
+                }
+                PlatformIndex.Entry newEntry = createIndexEntry(platformFilePath);
+                if (newEntry == null) {
+                    continue;
+                }
+                Platform newPlatform;
+                try {
+                    newPlatform = createPlatformFromIndexEntry(getRootPlatform(), newEntry);
+                } catch (IOException ex) {
+                    // The remaining platforms cannot be created either. They are left out of the lookup so that 
+                    // the next update tries them again, the changes collected so far are still saved and reported:
+                    LOGGER.log(Level.WARNING, "Failed to load the root platform", ex);
+                    break;
+                }
+                platformFilePathsToEntriesLookup.put(platformFilePath, newEntry);
+                Optional<Platform> oldPlatform = findPlatform(platformFilePath);
+                if (oldPlatform.isPresent()) {
+                    allPlatforms.set(allPlatforms.indexOf(oldPlatform.get()), newPlatform);
+                } else {
+                    allPlatforms.add(newPlatform);
+                }
+                events.add(new PlatformChangeEvent(this, oldPlatform.orElse(null), newPlatform));
+            }
+
+            if (!events.isEmpty() && platformIndex != null) {
+                platformIndex.save(settingsPath, new ArrayList<>(platformFilePathsToEntriesLookup.values()));
+            }
+        }
+        if (events.stream().anyMatch(event -> event.getOldPlatform() != null)) {
+            ArduinoDataSource.clearTemplatesCache();
+        }
+        pairReplacedPlatforms(events);
+        events.forEach(event -> {
+            LOGGER.log(Level.INFO, "Platform changed: {0}", event);
+            listeners.forEach(listener -> listener.platformChanged(event));
+        });
+    }
+
+    // An update by the Boards Manager removes the old version directory and creates a new one. 
+    // The removal and the installation of the same vendor/architecture are reported as a single replacement:
+    private void pairReplacedPlatforms(List<PlatformChangeEvent> events) {
+        for (int i = 0; i < events.size(); i++) {
+            Platform removedPlatform = events.get(i).getNewPlatform() == null ? events.get(i).getOldPlatform() : null;
+            if (removedPlatform == null) {
+                continue;
+            }
+            for (int j = 0; j < events.size(); j++) {
+                Platform addedPlatform = events.get(j).getOldPlatform() == null ? events.get(j).getNewPlatform() : null;
+                if (addedPlatform != null
+                    && addedPlatform.getVendor().equalsIgnoreCase(removedPlatform.getVendor())
+                    && addedPlatform.getArchitecture().equalsIgnoreCase(removedPlatform.getArchitecture())) {
+                    events.set(i, new PlatformChangeEvent(this, removedPlatform, addedPlatform));
+                    events.remove(j);
+                    if (j < i) {
+                        i--;
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    private Optional<Platform> findPlatform(Path platformFilePath) {
+        return allPlatforms.stream().filter(platform -> platform.getPlatformFilePath().equals(platformFilePath)).findFirst();
+    }
+
+    // Reuses up-to-date entries and creates new ones (in parallel) for the remaining paths
+    private static List<PlatformIndex.Entry> updateIndexEntries(List<PlatformIndex.Entry> entries, List<Path> platformPaths) {
+        Map<Path, PlatformIndex.Entry> pathsToEntriesLookup = new HashMap<>();
+        entries.forEach(entry -> pathsToEntriesLookup.put(entry.getPlatformFilePath(), entry));
+        return platformPaths.parallelStream()
+            .map(path -> {
+                PlatformIndex.Entry entry = pathsToEntriesLookup.get(path);
+                return (entry != null && entry.isUpToDate()) ? entry : createIndexEntry(path);
+            })
+            .filter(Objects::nonNull)
+            .collect(Collectors.toList());
+    }
+
+    // Platforms installed or removed while no factory was watching are added to (or removed from) this factory 
+    // and the listeners are notified just like for changes reported by the watcher
+    private void scheduleIndexRefresh(Path settingsPath) {
+        INDEX_REFRESH_EXECUTOR.execute(() -> {
+            try {
+                updatePlatforms(path -> true, findPlatformFilePaths(settingsPath));
+            } catch (IOException ex) {
+                LOGGER.log(Level.WARNING, "Failed to refresh the platform index", ex);
+            }
+        });
+    }
+
+    private static PlatformIndex.Entry createIndexEntry(Path platformFilePath) {
+        // Pattern: /home/user/.arduino15/packages/{vendor}/hardware/{architecture}/x.x.x/platform.txt
+        int hardwareIndex = findHardwareIndex(platformFilePath);
+        if (hardwareIndex == -1) {
+            LOGGER.log(Level.WARNING, "Unexpected platform file location: {0}", platformFilePath);
+            return null;
+        }
         String vendor = platformFilePath.getName(hardwareIndex - 1).toString();
         String architecture = platformFilePath.getName(hardwareIndex + 1).toString();
+        boolean packagesLayout = hardwareIndex >= 2 && PACKAGES_DIRNAME.equals(platformFilePath.getName(hardwareIndex - 2).toString());
+        if (!packagesLayout && hardwareIndex + 3 < platformFilePath.getNameCount()) {
+            // Custom hardware folder pattern: {hardware}/{vendor}/{architecture}/platform.txt
+            vendor = platformFilePath.getName(hardwareIndex + 1).toString();
+            architecture = platformFilePath.getName(hardwareIndex + 2).toString();
+        }
 
         try {
-            if (architecture.equalsIgnoreCase("pic32")) {
-                return new PIC32Platform(rootPlatform, vendor, platformFilePath.getParent());
-            } else {
-                return new Platform(rootPlatform, vendor, architecture, platformFilePath.getParent());
-            }
-        } catch (IOException ex) {
+            Path boardsFilePath = platformFilePath.resolveSibling(BOARDS_FILENAME);
+            // Take the stamps first so that a file modified while being parsed is parsed again next time:
+            PlatformIndex.FileStamp platformFileStamp = PlatformIndex.FileStamp.of(platformFilePath);
+            PlatformIndex.FileStamp boardsFileStamp = PlatformIndex.FileStamp.of(boardsFilePath);
+            Map<String, String> platformData = Platform.parseDataFile(platformFilePath);
+            Map<String, String> boardsData = Files.exists(boardsFilePath) ? Platform.parseDataFile(boardsFilePath) : Collections.emptyMap();
+            return new PlatformIndex.Entry(platformFilePath, vendor, architecture, platformFileStamp, platformData, boardsFileStamp, boardsData);
+        } catch (IOException | RuntimeException ex) {
             LOGGER.log(Level.SEVERE, String.format("Failed to create a platform for %s / %s ", vendor, architecture), ex);
             return null;
         }
+    }
 
+    private static Platform createPlatformFromIndexEntry(Platform rootPlatform, PlatformIndex.Entry entry) {
+        Path rootPath = entry.getPlatformFilePath().getParent();
+        Platform ret;
+        if (entry.getArchitecture().equalsIgnoreCase("pic32")) {
+            ret = new PIC32Platform(rootPlatform, entry.getVendor(), rootPath, entry.getPlatformData());
+        } else {
+            ret = new Platform(rootPlatform, entry.getVendor(), entry.getArchitecture(), rootPath, entry.getPlatformData());
+        }
+        if (entry.getBoardsFileStamp().getLastModifiedTime() != -1) {
+            ret.preloadBoardsIndex(entry.getBoardsFileStamp().getLastModifiedTime(), entry.getBoardsData());
+        }
+        // Platforms are shared by all imports. Import specific values go to BoardConfiguration overlays:
+        ret.freeze();
+        return ret;
     }
 
-    private static Platform createRootPlatform() throws IOException {
+    // The root platform is parsed once and shared by all factories unless the Arduino installation changes
+    private static synchronized Platform getRootPlatform() throws IOException {
         Path arduinoPlatformPath = ArduinoConfig.getInstance().getDefaultArduinoPlatformPath().get();
-        return new Platform(null, ROOT_PLATFORM_VENDOR, ROOT_PLATFORM_ARCH, arduinoPlatformPath);
+        if (sharedRootPlatform == null || !sharedRootPlatform.getRootPath().equals(arduinoPlatformPath)) {
+            sharedRootPlatform = new Platform(null, ROOT_PLATFORM_VENDOR, ROOT_PLATFORM_ARCH, arduinoPlatformPath);
+            sharedRootPlatform.freeze();
+        }
+        return sharedRootPlatform;
+    }
+
+    private static Optional<Path> findPlatformFilePath(Path settingsPath, String vendor, String architecture) throws IOException {
+        AtomicInteger visitedDirCount = new AtomicInteger();
+        Optional<Path> vendorPath = findDirectoryIgnoreCase(settingsPath.resolve(PACKAGES_DIRNAME), vendor, visitedDirCount);
+        Optional<Path> architecturePath = vendorPath.isPresent() ? findDirectoryIgnoreCase(vendorPath.get().resolve(HARDWARE_DIRNAME), architecture, visitedDirCount) : Optional.empty();
+        if (!architecturePath.isPresent()) {
+            return Optional.empty();
+        }
+        Path platformFilePath = architecturePath.get().resolve(PLATFORM_FILENAME);
+        if (Files.exists(platformFilePath)) {
+            return Optional.of(platformFilePath);
+        }
+        return listDirectories(architecturePath.get(), visitedDirCount).stream()
+            .filter(versionPath -> Files.exists(versionPath.resolve(PLATFORM_FILENAME)))
+            .max((p1, p2) -> compareVersions(p1.getFileName().toString(), p2.getFileName().toString()))
+            .map(versionPath -> versionPath.resolve(PLATFORM_FILENAME));
+    }
+
+    private static Optional<Path> findDirectoryIgnoreCase(Path parentPath, String name, AtomicInteger visitedDirCount) throws IOException {
+        Path path = parentPath.resolve(name);
+        if (Files.isDirectory(path)) {
+            return Optional.of(path);
+        }
+        return listDirectories(parentPath, visitedDirCount).stream().filter(p -> p.getFileName().toString().equalsIgnoreCase(name)).findFirst();
+    }
+
+    // Compares version strings like "1.6.11" part by part, numerically where both parts are numbers
+    private static int compareVersions(String version1, String version2) {
+        String[] parts1 = version1.split("\\.");
+        String[] parts2 = version2.split("\\.");
+        for (int i = 0; i < Math.max(parts1.length, parts2.length); i++) {
+            String part1 = i < parts1.length ? parts1[i] : "0";
+            String part2 = i < parts2.length ? parts2[i] : "0";
+            int result;
+            if (part1.matches("\\d+") && part2.matches("\\d+")) {
+                result = new BigInteger(part1).compareTo(new BigInteger(part2));
+            } else {
+                result = part1.compareTo(part2);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
     }
 
     private static Path validateArduinoSettingsPath(Path settingsPath) throws FileNotFoundException {
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A compact on-disk snapshot of all platforms found in an Arduino settings directory.
+ *
+ * Each entry holds the raw contents of the platform's platform.txt and boards.txt files together with 
+ * their sizes and modification times, so a platform can be recreated without parsing any files 
+ * as long as {@link Entry#isUpToDate()} returns true. The snapshot is read in a single pass when loaded.
+ */
+public class PlatformIndex {
+
+    
+    private static final Logger LOGGER = Logger.getLogger(PlatformIndex.class.getName());
+    private static final int MAGIC = 0x41504958;  // "APIX"
+    private static final int FORMAT_VERSION = 1;
+    
+    private final Path indexFilePath;
+    
+    
+    public PlatformIndex( Path indexFilePath ) {
+        if ( indexFilePath == null ) throw new IllegalArgumentException("indexFilePath cannot be null");
+        this.indexFilePath = indexFilePath;
+    }
+
+    public Path getIndexFilePath() {
+        return indexFilePath;
+    }
+    
+    /**
+     * @return the entries stored for the given settings directory or an empty Optional if there is no 
+     * usable snapshot
+     */
+    public Optional<List<Entry>> load( Path settingsPath ) {
+        if ( !Files.exists(indexFilePath) ) {
+            return Optional.empty();
+        }
+        try {
+            // Read the whole file rather than mapping it: a mapping stays open until it is garbage collected 
+            // and on Windows it prevents save() from replacing the file
+            ByteBuffer buffer = ByteBuffer.wrap( Files.readAllBytes(indexFilePath) );
+            if ( buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION ) {
+                LOGGER.log( Level.INFO, "Ignoring platform index with an unknown format: {0}", indexFilePath );
+                return Optional.empty();
+            }
+            if ( !settingsPath.toString().equals( readString(buffer) ) ) {
+                return Optional.empty();
+            }
+            int entryCount = buffer.getInt();
+            List <Entry> ret = new ArrayList<>(entryCount);
+            for ( int i=0; i<entryCount; i++ ) {
+                ret.add( new Entry(
+                    Paths.get( readString(buffer) ), readString(buffer), readString(buffer), 
+                    new FileStamp( buffer.getLong(), buffer.getLong() ), readMap(buffer), 
+                    new FileStamp( buffer.getLong(), buffer.getLong() ), readMap(buffer)
+                ));
+            }
+            return Optional.of(ret);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException ex) {
+            LOGGER.log( Level.WARNING, "Failed to load the platform index: " + indexFilePath, ex );
+            return Optional.empty();
+        }
+    }
+    
+    public void save( Path settingsPath, List<Entry> entries ) {
+        try {
+            Files.createDirectories( indexFilePath.getParent() );
+            // Write to a temporary file first so that a concurrent reader never sees a partial snapshot:
+            Path tempFilePath = Files.createTempFile( indexFilePath.getParent(), indexFilePath.getFileName().toString(), ".tmp" );
+            try (DataOutputStream out = new DataOutputStream( new BufferedOutputStream( Files.newOutputStream(tempFilePath) ) )) {
+                out.writeInt( MAGIC );
+                out.writeInt( FORMAT_VERSION );
+                writeString( out, settingsPath.toString() );
+                out.writeInt( entries.size() );
+                for ( Entry entry : entries ) {
+                    writeString( out, entry.platformFilePath.toString() );
+                    writeString( out, entry.vendor );
+                    writeString( out, entry.architecture );
+                    out.writeLong( entry.platformFileStamp.size );
+                    out.writeLong( entry.platformFileStamp.lastModifiedTime );
+                    writeMap( out, entry.platformData );
+                    out.writeLong( entry.boardsFileStamp.size );
+                    out.writeLong( entry.boardsFileStamp.lastModifiedTime );
+                    writeMap( out, entry.boardsData );
+                }
+            }
+            Files.move( tempFilePath, indexFilePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to save the platform index: " + indexFilePath, ex );
+        }
+    }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private static String readString( ByteBuffer buffer ) {
+        int length = buffer.getInt();
+        if ( length < 0 || length > buffer.remaining() ) throw new IllegalArgumentException("Corrupted string length: " + length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String( bytes, StandardCharsets.UTF_8 );
+    }
+    
+    private static Map <String,String> readMap( ByteBuffer buffer ) {
+        int size = buffer.getInt();
+        if ( size < 0 ) throw new IllegalArgumentException("Corrupted map size: " + size);
+        Map <String,String> ret = new HashMap<>( size * 4 / 3 + 1 );
+        for ( int i=0; i<size; i++ ) {
+            ret.put( readString(buffer), readString(buffer) );
+        }
+        return ret;
+    }
+    
+    private static void writeString( DataOutputStream out, String value ) throws IOException {
+        byte[] bytes = value.getBytes( StandardCharsets.UTF_8 );
+        out.writeInt( bytes.length );
+        out.write( bytes );
+    }
+    
+    private static void writeMap( DataOutputStream out, Map<String,String> map ) throws IOException {
+        out.writeInt( map.size() );
+        for ( Map.Entry<String,String> e : map.entrySet() ) {
+            writeString( out, e.getKey() );
+            writeString( out, e.getValue() );
+        }
+    }
+    
+    
+    /**
+     * Size and modification time of a file, or -1 for both if the file does not exist.
+     */
+    public static final class FileStamp {
+        
+        private final long size;
+        private final long lastModifiedTime;
+
+        public FileStamp( long size, long lastModifiedTime ) {
+            this.size = size;
+            this.lastModifiedTime = lastModifiedTime;
+        }
+        
+        public static FileStamp of( Path filePath ) throws IOException {
+            if ( !Files.exists(filePath) ) {
+                return new FileStamp(-1, -1);
+            }
+            return new FileStamp( Files.size(filePath), Files.getLastModifiedTime(filePath).toMillis() );
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModifiedTime() {
+            return lastModifiedTime;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModifiedTime);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || getClass() != obj.getClass()) {
+                return false;
+            }
+            final FileStamp other = (FileStamp) obj;
+            return size == other.size && lastModifiedTime == other.lastModifiedTime;
+        }
+        
+    }
+    
+    public static final class Entry {
+        
+        private final Path platformFilePath;
+        private final String vendor;
+        private final String architecture;
+        private final FileStamp platformFileStamp;
+        private final Map <String,String> platformData;
+        private final FileStamp boardsFileStamp;
+        private final Map <String,String> boardsData;
+
+        public Entry( Path platformFilePath, String vendor, String architecture, FileStamp platformFileStamp, Map<String,String> platformData, FileStamp boardsFileStamp, Map<String,String> boardsData ) {
+            this.platformFilePath = platformFilePath;
+            this.vendor = vendor;
+            this.architecture = architecture;
+            this.platformFileStamp = platformFileStamp;
+            this.platformData = CompactDataMap.of(platformData);
+            this.boardsFileStamp = boardsFileStamp;
+            this.boardsData = CompactDataMap.of(boardsData);
+        }
+
+        public Path getPlatformFilePath() {
+            return platformFilePath;
+        }
+
+        public Path getBoardsFilePath() {
+            return platformFilePath.resolveSibling( Platform.BOARDS_FILENAME );
+        }
+        
+        public String getVendor() {
+            return vendor;
+        }
+
+        public String getArchitecture() {
+            return architecture;
+        }
+
+        public FileStamp getPlatformFileStamp() {
+            return platformFileStamp;
+        }
+
+        public Map<String, String> getPlatformData() {
+            return platformData;
+        }
+
+        public FileStamp getBoardsFileStamp() {
+            return boardsFileStamp;
+        }
+
+        public Map<String, String> getBoardsData() {
+            return boardsData;
+        }
+        
+        public boolean isUpToDate() {
+            try {
+                return platformFileStamp.equals( FileStamp.of(platformFilePath) ) && boardsFileStamp.equals( FileStamp.of( getBoardsFilePath() ) );
+            } catch (IOException ex) {
+                return false;
+            }
+        }
+        
+    }
+    
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Watches the "packages/{vendor}/hardware/{architecture}/{version}" directories and reports 
+ * the architecture directories in which something has changed.
+ * 
+ * Events are debounced: a Boards Manager installation produces thousands of events, 
+ * so the handler is called only once the directories have been quiet for a while.
+ */
+final class PlatformWatcher implements Runnable, Closeable {
+
+    
+    private static final Logger LOGGER = Logger.getLogger(PlatformWatcher.class.getName());
+    private static final long DEBOUNCE_DELAY = 2000;
+    // packages/{vendor}/hardware/{architecture}/{version}
+    private static final int VERSION_DIR_DEPTH = 4;
+    private static final int ARCHITECTURE_DIR_DEPTH = 3;
+    private static final int HARDWARE_DIR_DEPTH = 2;
+    
+    private final Path packagesPath;
+    private final String hardwareDirName;
+    private final Consumer<Path> architectureChangeHandler;
+    private final WatchService watchService;
+    private final Map <WatchKey,Path> keysToDirPathsLookup = new HashMap<>();
+    private final Thread thread;
+    
+    
+    PlatformWatcher( Path packagesPath, String hardwareDirName, Consumer<Path> architectureChangeHandler ) throws IOException {
+        this.packagesPath = packagesPath;
+        this.hardwareDirName = hardwareDirName;
+        this.architectureChangeHandler = architectureChangeHandler;
+        this.watchService = packagesPath.getFileSystem().newWatchService();
+        register( packagesPath );
+        this.thread = new Thread( this, "Arduino Platform Watcher" );
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        Set <Path> changedArchitecturePaths = new LinkedHashSet<>();
+        try {
+            while ( true ) {
+                WatchKey key = changedArchitecturePaths.isEmpty() ? watchService.take() : watchService.poll( DEBOUNCE_DELAY, TimeUnit.MILLISECONDS );
+                if ( key == null ) {
+                    // Quiet period is over:
+                    changedArchitecturePaths.forEach( this::handleChange );
+                    changedArchitecturePaths.clear();
+                    continue;
+                }
+                Path dirPath = keysToDirPathsLookup.get(key);
+                for ( WatchEvent<?> event : key.pollEvents() ) {
+                    if ( event.kind() == StandardWatchEventKinds.OVERFLOW || dirPath == null ) {
+                        changedArchitecturePaths.addAll( findKnownArchitecturePaths( packagesPath ) );
+                        continue;
+                    }
+                    Path childPath = dirPath.resolve( (Path) event.context() );
+                    int depth = packagesPath.relativize(childPath).getNameCount();
+                    if ( depth > ARCHITECTURE_DIR_DEPTH ) {
+                        // A version directory or a file inside it:
+                        changedArchitecturePaths.add( packagesPath.resolve( packagesPath.relativize(childPath).subpath(0, ARCHITECTURE_DIR_DEPTH) ) );
+                        if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(childPath) ) {
+                            register( childPath );
+                        }
+                    } else {
+                        // A vendor, hardware or architecture directory has been added or removed:
+                        changedArchitecturePaths.addAll( findKnownArchitecturePaths( childPath ) );
+                        if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(childPath) ) {
+                            register( childPath );
+                            changedArchitecturePaths.addAll( findKnownArchitecturePaths( childPath ) );
+                        }
+                    }
+                }
+                if ( !key.reset() ) {
+                    keysToDirPathsLookup.remove(key);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            LOGGER.fine( "Platform watcher stopped" );
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Platform watcher failed", ex );
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        thread.interrupt();
+    }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private void register( Path dirPath ) throws IOException {
+        Files.walkFileTree( dirPath, EnumSet.noneOf(FileVisitOption.class), VERSION_DIR_DEPTH, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Path relativePath = packagesPath.relativize(dir);
+                int depth = dir.equals(packagesPath) ? 0 : relativePath.getNameCount();
+                if ( depth > VERSION_DIR_DEPTH ) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if ( depth > HARDWARE_DIR_DEPTH && !relativePath.getName(HARDWARE_DIR_DEPTH - 1).toString().equals(hardwareDirName) ) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                if ( depth == HARDWARE_DIR_DEPTH && !dir.getFileName().toString().equals(hardwareDirName) ) {
+                    return FileVisitResult.SKIP_SUBTREE;
+                }
+                WatchKey key = dir.register( watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY );
+                keysToDirPathsLookup.put( key, dir );
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) throws IOException {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+    
+    private Set<Path> findKnownArchitecturePaths( Path parentPath ) {
+        Set <Path> ret = new LinkedHashSet<>();
+        keysToDirPathsLookup.values().forEach( dirPath -> {
+            Path relativePath = packagesPath.relativize(dirPath);
+            if ( dirPath.startsWith(parentPath) && !dirPath.equals(packagesPath) && relativePath.getNameCount() >= ARCHITECTURE_DIR_DEPTH ) {
+                ret.add( packagesPath.resolve( relativePath.subpath(0, ARCHITECTURE_DIR_DEPTH) ) );
+            }
+        });
+        return ret;
+    }
+    
+    private void handleChange( Path architecturePath ) {
+        try {
+            architectureChangeHandler.accept( architecturePath );
+        } catch (RuntimeException ex) {
+            LOGGER.log( Level.WARNING, "Failed to reload the platform in " + architecturePath, ex );
+        }
+    }
+    
+}
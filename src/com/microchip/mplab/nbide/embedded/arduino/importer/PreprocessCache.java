@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import com.microchip.mplab.nbide.embedded.arduino.utils.CopyingFileVisitor;
+import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * An on-disk cache of arduino-builder "-preprocess" results shared by all imported projects.
+ *
+ * Each entry is a directory holding the generated "sketch" directory and the "includes.cache" file.
+ * Keys are created by the {@link ArduinoBuilderRunner} out of the sketch file contents, the FQBN, 
+ * the installed libraries, the board's platform files and the identity of the arduino-builder executable.
+ * The total size of the cache is limited; least recently used entries are removed first.
+ */
+public class PreprocessCache {
+
+
+    public static final long DEFAULT_MAX_SIZE = 128L * 1024 * 1024;
+    public static final String SKETCH_DIRECTORY_NAME = "sketch";
+    public static final String INCLUDES_CACHE_FILENAME = "includes.cache";
+
+    private static final Logger LOGGER = Logger.getLogger(PreprocessCache.class.getName());
+    private static final String TEMP_ENTRY_SUFFIX = ".tmp";
+
+    private final Path cacheDirPath;
+    private final long maxSize;
+
+
+    public PreprocessCache( Path cacheDirPath ) {
+        this( cacheDirPath, DEFAULT_MAX_SIZE );
+    }
+
+    public PreprocessCache( Path cacheDirPath, long maxSize ) {
+        if ( cacheDirPath == null ) throw new IllegalArgumentException("cacheDirPath cannot be null");
+        if ( maxSize < 1 ) throw new IllegalArgumentException("maxSize must be greater than 0");
+        this.cacheDirPath = cacheDirPath;
+        this.maxSize = maxSize;
+    }
+
+    public Path getCacheDirPath() {
+        return cacheDirPath;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Copies the cached "sketch" directory and "includes.cache" file to the preprocess directory.
+     *
+     * @return true if there was a cache entry for the key
+     */
+    public boolean restore( String key, Path preprocessDirPath ) {
+        Path entryPath = cacheDirPath.resolve(key);
+        if ( !Files.isDirectory(entryPath) ) {
+            return false;
+        }
+        try {
+            Files.createDirectories(preprocessDirPath);
+            Files.copy( entryPath.resolve(INCLUDES_CACHE_FILENAME), preprocessDirPath.resolve(INCLUDES_CACHE_FILENAME), StandardCopyOption.REPLACE_EXISTING );
+            Files.walkFileTree( entryPath.resolve(SKETCH_DIRECTORY_NAME), new CopyingFileVisitor( entryPath.resolve(SKETCH_DIRECTORY_NAME), preprocessDirPath.resolve(SKETCH_DIRECTORY_NAME) ) );
+            Files.setLastModifiedTime( entryPath, FileTime.fromMillis( System.currentTimeMillis() ) );
+            LOGGER.log( Level.INFO, "Restored the preprocessed sketch from the preprocess cache: {0}", key );
+            return true;
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to restore preprocess cache entry: " + entryPath, ex );
+            return false;
+        }
+    }
+
+    public void store( String key, Path preprocessDirPath ) {
+        Path entryPath = cacheDirPath.resolve(key);
+        Path tempEntryPath = null;
+        try {
+            Files.createDirectories(cacheDirPath);
+            // Copy to a temporary directory first so that a concurrent import never sees a partial entry:
+            tempEntryPath = Files.createTempDirectory(cacheDirPath, key + TEMP_ENTRY_SUFFIX);
+            Files.copy( preprocessDirPath.resolve(INCLUDES_CACHE_FILENAME), tempEntryPath.resolve(INCLUDES_CACHE_FILENAME) );
+            Files.walkFileTree( preprocessDirPath.resolve(SKETCH_DIRECTORY_NAME), new CopyingFileVisitor( preprocessDirPath.resolve(SKETCH_DIRECTORY_NAME), tempEntryPath.resolve(SKETCH_DIRECTORY_NAME) ) );
+            if ( Files.exists(entryPath) ) {
+                // Another import has stored the same result in the meantime
+                Files.walkFileTree(tempEntryPath, new DeletingFileVisitor());
+            } else {
+                Files.move( tempEntryPath, entryPath, StandardCopyOption.ATOMIC_MOVE );
+            }
+            trim();
+        } catch (IOException ex) {
+            LOGGER.log( Level.WARNING, "Failed to store " + preprocessDirPath + " in the preprocess cache", ex );
+            deleteQuietly(tempEntryPath);
+        }
+    }
+
+    public void trim() throws IOException {
+        if ( !Files.exists(cacheDirPath) ) return;
+        List <Path> entryPaths;
+        try (Stream<Path> stream = Files.list(cacheDirPath)) {
+            entryPaths = stream
+                .filter( p -> Files.isDirectory(p) && !p.getFileName().toString().contains(TEMP_ENTRY_SUFFIX) )
+                .collect( Collectors.toCollection( ArrayList::new ) );
+        }
+
+        Map <Path,Long> entrySizes = new HashMap<>();
+        long totalSize = 0;
+        for ( Path entryPath : entryPaths ) {
+            long size = getSize(entryPath);
+            entrySizes.put( entryPath, size );
+            totalSize += size;
+        }
+        if ( totalSize <= maxSize ) return;
+
+        entryPaths.sort( Comparator.comparingLong( PreprocessCache::getLastModifiedTime ) );
+        for ( Path entryPath : entryPaths ) {
+            if ( totalSize <= maxSize ) break;
+            Files.walkFileTree( entryPath, new DeletingFileVisitor() );
+            totalSize -= entrySizes.get(entryPath);
+            LOGGER.log( Level.INFO, "Removed least recently used preprocess cache entry: {0}", entryPath.getFileName() );
+        }
+    }
+
+    public void clear() throws IOException {
+        if ( Files.exists(cacheDirPath) ) {
+            Files.walkFileTree(cacheDirPath, new DeletingFileVisitor());
+        }
+    }
+
+
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private static long getSize( Path entryPath ) throws IOException {
+        try (Stream<Path> stream = Files.walk(entryPath)) {
+            return stream.filter( Files::isRegularFile ).mapToLong( p -> p.toFile().length() ).sum();
+        }
+    }
+
+    private static long getLastModifiedTime( Path path ) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly( Path path ) {
+        if ( path == null || !Files.exists(path) ) return;
+        try {
+            Files.walkFileTree(path, new DeletingFileVisitor());
+        } catch (IOException ex) {
+            LOGGER.log( Level.FINE, "Failed to delete " + path, ex );
+        }
+    }
+
+}
@@ -35,9 +35,13 @@ import java.util.logging.Logger;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.openide.util.Utilities;
 
 
 public class ProjectImporter {
@@ -46,12 +50,17 @@ public class ProjectImporter {
     private static final Logger LOGGER = Logger.getLogger(ProjectImporter.class.getName());    
     private static final String LIBRARY_EXAMPLES_DIR_NAME = "examples";
     private static final String LIBRARY_TEST_DIR_NAME = "test";
+    // All extensions matched by PROJECT_SOURCE_FILE_MATCHER and the legacy .pde extension:
+    private static final List<String> SKETCH_FILE_EXTENSIONS = Arrays.asList("ino", "INO", "pde", "PDE", "c", "C", "cpp", "CPP", "s", "S", "h", "H", "x", "X");
     
     
     public static final String CORE_DIRECTORY_NAME = "imported-core";    
     public static final String LIBRARIES_DIRECTORY_NAME = "imported-libraries";
     public static final String SOURCE_FILES_DIRECTORY_NAME = "source";
     public static final String IMPORTED_PROPERTIES_FILENAME = "imported.properties";    
+    public static final String PREPROCESS_MAKEFILE_NAME = "Makefile-preprocess";
+    public static final String PREPROCESS_STAMP_FILENAME = "preprocess.stamp";
+    public static final String PREPROCESS_SIZES_FILENAME = "preprocess.sizes";
     public static final List<String> CUSTOM_LD_SCRIPT_BOARD_IDS = Arrays.asList("fubarino_mini_dev", "fubarino_mini", "lenny", "chipkit_Pi_USB_Serial", "chipkit_Pi", "chipkit_DP32", "cmod");
     
     // TODO: Make source filename matching more robust - maybe match everything that is not an .ld file?
@@ -72,6 +81,10 @@ public class ProjectImporter {
     private BoardConfiguration boardConfiguration;
     private ArduinoBuilderRunner arduinoBuilderRunner;
     private BootloaderPathProvider bootloaderPathProvider;
+    private LibCoreCache libCoreCache;
+    private ObjectCache objectCache;
+    private boolean unityBuildEnabled;
+    private Map <String,Set<String>> unityBuildDenylist = new HashMap<>();
 
     // RO properties set during "execute":
     private List <Path> sourceLibraryPaths;
@@ -138,8 +151,44 @@ public class ProjectImporter {
     public BoardConfiguration getBoardConfiguration() {
         return boardConfiguration;
     }
+
+    public void setLibCoreCache(LibCoreCache libCoreCache) {
+        this.libCoreCache = libCoreCache;
+    }
+
+    public LibCoreCache getLibCoreCache() {
+        return libCoreCache;
+    }
+
+    public void setObjectCache(ObjectCache objectCache) {
+        this.objectCache = objectCache;
+    }
+
+    public ObjectCache getObjectCache() {
+        return objectCache;
+    }
+
+    public void setUnityBuildEnabled(boolean unityBuildEnabled) {
+        this.unityBuildEnabled = unityBuildEnabled;
+    }
+
+    public boolean isUnityBuildEnabled() {
+        return unityBuildEnabled;
+    }
+
+    public void setUnityBuildDenylist(Map<String, Set<String>> unityBuildDenylist) {
+        if ( unityBuildDenylist == null ) throw new IllegalArgumentException("unityBuildDenylist cannot be null");
+        this.unityBuildDenylist = unityBuildDenylist;
+    }
+
+    public Map<String, Set<String>> getUnityBuildDenylist() {
+        return unityBuildDenylist;
+    }
     
     public void execute() throws IOException, InterruptedException {
+        // The board configuration may be shared with other imports so the import specific values go to a private overlay:
+        boardConfiguration = boardConfiguration.createOverlay();
+        
         // TODO: Add a property check
         customLdScriptBoard = CUSTOM_LD_SCRIPT_BOARD_IDS.contains( boardConfiguration.getBoardId() );
         
@@ -158,7 +207,7 @@ public class ProjectImporter {
         Path variantDirPath = copyingFiles ? getTargetCoreDirectoryPath() : sourceVariantDirPath;
         Path ldScriptDirPath = customLdScriptBoard ? getTargetCoreDirectoryPath() : null;
         
-        boardConfiguration.getPlatform().putValue("runtime.ide.version", "10802");
+        boardConfiguration.putValue("runtime.ide.version", "10802");
         boardConfiguration.putValue("build.path", "\""+targetProjectDirectoryPath.toString()+"\"" );
         boardConfiguration.putValue("build.core.path", coreDirPath.toString() );
         boardConfiguration.putValue("build.variant.path", variantDirPath != null ? variantDirPath.toString() : "" );
@@ -167,6 +216,9 @@ public class ProjectImporter {
         createProjectDirectoryStructure();
         Path tempSketchPath = preprocessSourceProject();
         importSketchFiles( tempSketchPath );
+        if ( !copyingFiles ) {
+            writePreprocessMakefile();
+        }
         
         if ( copyingFiles ) {
             copyCoreFiles();
@@ -188,6 +240,14 @@ public class ProjectImporter {
         return arduinoBuilderRunner.getCommand();
     }
 
+    /**
+     * @return the pre-build step for projects that use the original sketch files. It reruns the preprocessing command 
+     * only when a sketch file, the platform or arduino-builder has changed since the last run
+     */
+    public String getPreprocessingStepCommand() {
+        return "${MAKE} -f " + PREPROCESS_MAKEFILE_NAME;
+    }
+
     public Path getPreprocessedSketchDirectoryPath() {
         return arduinoBuilderRunner.getPreprocessedSketchDirPath();
     }
@@ -332,6 +392,64 @@ public class ProjectImporter {
             .filter( p -> main == mainLibraryNames.contains(p.getFileName().toString()) );
     }
 
+    // The stamp file is newer than all inputs as long as nothing has changed, so make skips the recipe and reports 
+    // that the stamp is up to date. Adding or removing a sketch file changes the modification time of the sketch directory 
+    // and the sketch files are listed by a wildcard, so files added later are inputs as well.
+    // A newer input alone (a checkout or a copy of the sketch) does not rerun arduino-builder: the recipe compares the sizes 
+    // of all input files with the ones recorded by the last run and only preprocesses if they differ.
+    private void writePreprocessMakefile() throws IOException {
+        List <Path> inputFilePaths = new ArrayList<>();
+        inputFilePaths.add( boardConfiguration.getPlatform().getPlatformFilePath() );
+        inputFilePaths.add( boardConfiguration.getPlatform().getBoardsFilePath() );
+        inputFilePaths.add( arduinoBuilderRunner.getArduinoPathResolver().findArduinoBuilderPath( arduinoBuilderRunner.getArduinoInstallPath() ) );
+        
+        List <String> lines = new ArrayList<>();
+        lines.add( "# Runs arduino-builder only if the sketch or the preprocessing inputs have changed." );
+        lines.add( "# An input counts as changed if both its modification time and its size differ from the last run," );
+        lines.add( "# or if sketch files were added or removed. An edit that keeps the size of every file, or an older file" );
+        lines.add( "# restored with its original modification time, is not detected. Delete " + PREPROCESS_STAMP_FILENAME + " to force preprocessing." );
+        // The sketch files are matched when make runs so that tabs added after the import are inputs too:
+        String sketchDir = escapeMakefilePath( sourceProjectDirectoryPath );
+        lines.add( "PREPROCESS_FILES =" + inputFilePaths.stream().map( p -> " \\\n\t" + escapeMakefilePath(p) ).collect( Collectors.joining() )
+            + " \\\n\t$(wildcard" + SKETCH_FILE_EXTENSIONS.stream().map( e -> " " + sketchDir + "/*." + e ).collect( Collectors.joining() ) + ")" );
+        lines.add( "PREPROCESS_INPUTS = " + sketchDir + " $(PREPROCESS_FILES)" );
+        lines.add( "" );
+        lines.add( PREPROCESS_STAMP_FILENAME + ": $(PREPROCESS_INPUTS) " + PREPROCESS_MAKEFILE_NAME );
+        String preprocessingCommand = escapeMakefileText( getPreprocessingCommand() ) + " > preprocess.log";
+        String newSizesFilename = PREPROCESS_SIZES_FILENAME + ".new";
+        if ( Utilities.isWindows() ) {
+            // Make runs the recipes with cmd.exe
+            lines.add( "\t@(for %F in ($(PREPROCESS_FILES)) do @echo %~zF %F) > " + newSizesFilename );
+            lines.add( "\t@fc /b " + PREPROCESS_SIZES_FILENAME + " " + newSizesFilename + " > nul 2>&1"
+                + " && (echo Sketch sources have not been modified. Skipping arduino-builder)"
+                + " || (echo Sketch sources have changed. Running arduino-builder... && " + preprocessingCommand + ")" );
+            lines.add( "\t@move /y " + newSizesFilename + " " + PREPROCESS_SIZES_FILENAME + " > nul" );
+        } else {
+            lines.add( "\t@wc -c $(PREPROCESS_FILES) > " + newSizesFilename );
+            lines.add( "\t@if cmp -s " + PREPROCESS_SIZES_FILENAME + " " + newSizesFilename + "; then"
+                + " echo \"Sketch sources have not been modified. Skipping arduino-builder\"; else"
+                + " echo \"Sketch sources have changed. Running arduino-builder...\" && " + preprocessingCommand + "; fi" );
+            lines.add( "\t@mv -f " + newSizesFilename + " " + PREPROCESS_SIZES_FILENAME );
+        }
+        lines.add( "\t@echo done> " + PREPROCESS_STAMP_FILENAME );
+        Files.write( targetProjectDirectoryPath.resolve(PREPROCESS_MAKEFILE_NAME), lines );
+        
+        // The sizes recorded for a previous Makefile are not valid for this one, so the next run after make has found 
+        // a newer input always preprocesses:
+        Files.deleteIfExists( targetProjectDirectoryPath.resolve(PREPROCESS_SIZES_FILENAME) );
+        
+        // The sketch has just been preprocessed so the first build does not need to do it again:
+        Files.write( targetProjectDirectoryPath.resolve(PREPROCESS_STAMP_FILENAME), Arrays.asList("done") );
+    }
+    
+    private static String escapeMakefilePath( Path path ) {
+        return escapeMakefileText( path.toString() ).replace(" ", "\\ ");
+    }
+    
+    private static String escapeMakefileText( String text ) {
+        return text.replace("$", "$$");
+    }
+    
     private Path findMainInoFilePath( Path inoProjectPath ) {
         return inoProjectPath.resolve(inoProjectPath.getFileName() + ".ino");
     }
@@ -454,13 +572,37 @@ public class ProjectImporter {
     
     private void buildLibCore() throws IOException, InterruptedException {
         Path coreDirPath = targetProjectDirectoryPath.resolve(CORE_DIRECTORY_NAME);
-        LibCoreBuilder libCoreBuilder = new LibCoreBuilder( coreDirPath );
+        // The core is compiled where its sources are: the copied ones in copy-all mode, the original ones otherwise. 
+        // The Makefile, the objects and the library are written straight to the imported core directory 
+        // so that a later rebuild of the core is incremental:
+        LibCoreBuilder libCoreBuilder = new LibCoreBuilder( copyingFiles ? coreDirPath : null, coreDirPath );
+        libCoreBuilder.setLibCoreCache( libCoreCache );
+        libCoreBuilder.setObjectCache( objectCache );
+        libCoreBuilder.setUnityBuildEnabled( unityBuildEnabled );
+        libCoreBuilder.setUnityBuildDenylist( unityBuildDenylist );
         libCoreBuilder.build( boardConfiguration, arduinoBuilderRunner.getToolFinder(), LOGGER::info );
-        Files.copy( libCoreBuilder.getLibCorePath(), coreDirPath.resolve( LibCoreBuilder.LIB_CORE_FILENAME ) );
-        Files.copy( libCoreBuilder.getMakefilePath(), coreDirPath.resolve( libCoreBuilder.getMakefileName() ) );        
-        libCoreBuilder.cleanup();
+        
+        // Makes the disk writes of the core build measurable. The sources are neither copied to a temporary directory nor back:
+        long bytesWritten = getSize( libCoreBuilder.getMakefilePath() ) + getSize( libCoreBuilder.getObjectDirPath() ) + getSize( libCoreBuilder.getLibCorePath() );
+        long sourceBytes = 0;
+        try (Stream<Path> stream = createSourceCoreFilesStream()) {
+            for ( Path sourceFilePath : (Iterable<Path>) stream::iterator ) {
+                sourceBytes += getSize( sourceFilePath );
+            }
+        }
+        LOGGER.log( Level.INFO, "Core build wrote {0} bytes to {1} (Makefile, objects and library), {2} bytes of core sources were compiled in place", 
+            new Object[] { bytesWritten, coreDirPath, sourceBytes } );
     }                        
     
+    private static long getSize( Path path ) throws IOException {
+        if ( !Files.exists(path) ) {
+            return 0;
+        }
+        try (Stream<Path> stream = Files.walk(path)) {
+            return stream.filter( Files::isRegularFile ).mapToLong( p -> p.toFile().length() ).sum();
+        }
+    }
+    
     private Stream createSourceCoreFilesStream() {
         try {
             return Stream.concat(
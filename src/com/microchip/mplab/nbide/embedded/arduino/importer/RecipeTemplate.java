@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+
+/**
+ * A pattern like "recipe.cpp.o.pattern" parsed once into literal and "{placeholder}" segments.
+ *
+ * Rendering a template does no regex work, it appends the segments to a (possibly reused) StringBuilder
+ * and looks up one value per placeholder. Placeholders without a value are kept as they are.
+ * <pre>
+ * RecipeTemplate template = boardConfiguration.getTemplate("recipe.c.o.pattern", runtimeData).get();
+ * StringBuilder command = new StringBuilder();
+ * for ( ... ) {
+ *     command.setLength(0);
+ *     template.render( command, fileData );
+ * }
+ * </pre>
+ * Instances are immutable and thread-safe.
+ */
+public final class RecipeTemplate {
+
+
+    private final String pattern;
+    private final String[] texts;
+    private final String[] placeholders;  // null for literal segments
+
+
+    private RecipeTemplate( String pattern, List<String> texts, List<String> placeholders ) {
+        this.pattern = pattern;
+        this.texts = texts.toArray( new String[texts.size()] );
+        this.placeholders = placeholders.toArray( new String[placeholders.size()] );
+    }
+
+    public static RecipeTemplate compile( String pattern ) {
+        List <String> texts = new ArrayList<>();
+        List <String> placeholders = new ArrayList<>();
+        Matcher m = ArduinoDataSource.TOKEN_PATTERN.matcher( pattern );
+        int position = 0;
+        while ( m.find() ) {
+            if ( m.start() > position ) {
+                texts.add( pattern.substring(position, m.start()) );
+                placeholders.add( null );
+            }
+            String placeholderWithBraces = m.group(1);
+            texts.add( placeholderWithBraces );
+            placeholders.add( placeholderWithBraces.substring(1, placeholderWithBraces.length()-1) );
+            position = m.end();
+        }
+        if ( position < pattern.length() ) {
+            texts.add( pattern.substring(position) );
+            placeholders.add( null );
+        }
+        return new RecipeTemplate( pattern, texts, placeholders );
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    public Set<String> getPlaceholderNames() {
+        Set <String> ret = new LinkedHashSet<>();
+        for ( String placeholder : placeholders ) {
+            if ( placeholder != null ) ret.add( placeholder );
+        }
+        return Collections.unmodifiableSet(ret);
+    }
+
+    public String render( Map<String,String> values ) {
+        return render( new StringBuilder( pattern.length() * 2 ), values ).toString();
+    }
+
+    public StringBuilder render( StringBuilder target, Map<String,String> values ) {
+        return render( target, values::get );
+    }
+
+    /**
+     * @param resolver returns the value of a placeholder or null to keep the placeholder as it is
+     */
+    public StringBuilder render( StringBuilder target, Function<String,String> resolver ) {
+        for ( int i=0; i<texts.length; i++ ) {
+            String value = placeholders[i] != null ? resolver.apply( placeholders[i] ) : null;
+            target.append( value != null ? value : texts[i] );
+        }
+        return target;
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+
+}
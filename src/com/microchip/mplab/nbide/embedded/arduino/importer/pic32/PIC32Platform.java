@@ -3,11 +3,21 @@ package com.microchip.mplab.nbide.embedded.arduino.importer.pic32;
 import com.microchip.mplab.nbide.embedded.arduino.importer.Platform;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Map;
 
 public class PIC32Platform extends Platform {
     
     public PIC32Platform(Platform parent, String vendor, Path rootPath) throws IOException {
         super(parent, vendor, "pic32", rootPath );
+        applyXC32Settings();
+    }
+    
+    public PIC32Platform(Platform parent, String vendor, Path rootPath, Map<String,String> platformData) {
+        super(parent, vendor, "pic32", rootPath, platformData );
+        applyXC32Settings();
+    }
+    
+    private void applyXC32Settings() {
         putValue("compiler.c.cmd", "xc32-gcc");
         putValue("compiler.c.elf.cmd", "xc32-g++");
         putValue("compiler.cpp.cmd", "xc32-g++");
@@ -21,6 +31,7 @@ public class PIC32Platform extends Platform {
         putValue("compiler.cpp.flags", getValue("compiler.cpp.flags").orElse("") + " -std=gnu++11");
         
         data.entrySet().forEach( e -> e.setValue( e.getValue().replaceAll(" -O2 ", " -O1 ") ) );
+        dataModified();
     }
     
 }
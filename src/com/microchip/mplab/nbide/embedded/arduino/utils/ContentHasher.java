@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.utils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Accumulates strings, file contents and file identities into a single hex-encoded hash 
+ * that can be used as a cache key.
+ */
+public final class ContentHasher {
+
+    
+    private static final String HASH_ALGORITHM = "SHA-1";
+    
+    private final MessageDigest digest;
+    
+    
+    public ContentHasher() {
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+    
+    public ContentHasher update( String value ) {
+        digest.update( value.getBytes(StandardCharsets.UTF_8) );
+        digest.update( (byte) 0 );  // Separator, so that "ab"+"c" and "a"+"bc" differ
+        return this;
+    }
+    
+    public ContentHasher updateFileContents( Path filePath ) throws IOException {
+        digest.update( Files.readAllBytes(filePath) );
+        digest.update( (byte) 0 );
+        return this;
+    }
+    
+    /**
+     * Identifies a file by its size and modification time rather than by its contents.
+     * This is meant for large files like compiler executables.
+     */
+    public ContentHasher updateFileIdentity( Path filePath ) throws IOException {
+        if ( Files.exists(filePath) ) {
+            update( Long.toString( Files.size(filePath) ) );
+            update( Long.toString( Files.getLastModifiedTime(filePath).toMillis() ) );
+        }
+        return this;
+    }
+    
+    public String toHexString() {
+        byte[] bytes = digest.digest();
+        StringBuilder ret = new StringBuilder( bytes.length * 2 );
+        for ( byte b : bytes ) {
+            ret.append( Character.forDigit( (b >> 4) & 0xF, 16 ) ).append( Character.forDigit( b & 0xF, 16 ) );
+        }
+        return ret.toString();
+    }
+    
+}
@@ -19,10 +19,12 @@ package com.microchip.mplab.nbide.embedded.arduino.wizard;
 import com.microchip.mplab.nbide.embedded.arduino.importer.ArduinoConfig;
 import com.microchip.mplab.nbide.embedded.arduino.importer.Board;
 import com.microchip.mplab.nbide.embedded.arduino.importer.PlatformFactory;
+import com.microchip.mplab.nbide.embedded.arduino.importer.PlatformIndex;
 import com.microchip.mplab.nbide.embedded.makeproject.api.wizards.WizardProperty;
 import java.util.Set;
 import org.openide.WizardDescriptor;
 import org.openide.filesystems.FileObject;
+import org.openide.modules.Places;
 import static com.microchip.mplab.nbide.embedded.makeproject.api.wizards.NewMakeProjectWizardIterator.TYPE_APPLICATION;
 import java.awt.Component;
 import java.text.MessageFormat;
@@ -39,8 +41,10 @@ import org.openide.util.NbBundle;
 public class ImportWizardIterator implements WizardDescriptor.InstantiatingIterator {
 
     private static final Logger LOGGER = Logger.getLogger(ImportWizardIterator.class.getName());
+    private static final String PLATFORM_INDEX_FILE_PATH = "arduino-importer/platforms.idx";
     
     private final ArduinoConfig arduinoConfig;
+    private PlatformFactory platformFactory;
     private ImportWorker importWorker;
     private int index;
     private WizardDescriptor.Panel[] panels;
@@ -60,8 +64,11 @@ public class ImportWizardIterator implements WizardDescriptor.InstantiatingItera
         wiz.setTitleFormat(new MessageFormat("{0}"));
         wiz.setTitle(NbBundle.getMessage(ImportWizardIterator.class, "WizardTitle") );        
         
+        platformFactory = new PlatformFactory();
+        platformFactory.setPlatformIndex( new PlatformIndex( Places.getCacheDirectory().toPath().resolve(PLATFORM_INDEX_FILE_PATH) ) );
+        
         panels = new WizardDescriptor.Panel[]{            
-            new ProjectSetupStep( arduinoConfig, new PlatformFactory(), new MPLABDeviceAssistant() ),
+            new ProjectSetupStep( arduinoConfig, platformFactory, new MPLABDeviceAssistant() ),
             new BoardConfigurationStep( new MPLABDeviceAssistant() ),
             new ProgrammerDebuggerSelectionStep(),
             new ProgressTrackingStep( importWorker )
@@ -103,7 +110,9 @@ public class ImportWizardIterator implements WizardDescriptor.InstantiatingItera
 
     @Override
     public void uninitialize(WizardDescriptor wd) {
-        // Do nothing
+        if ( platformFactory != null ) {
+            platformFactory.stopWatching();
+        }
     }
 
     @Override
@@ -21,6 +21,11 @@ import com.microchip.mplab.nbide.embedded.api.LanguageToolchainManager;
 import com.microchip.mplab.nbide.embedded.arduino.importer.ArduinoBuilderRunner;
 import com.microchip.mplab.nbide.embedded.arduino.importer.ArduinoConfig;
 import com.microchip.mplab.nbide.embedded.arduino.importer.BootloaderPathProvider;
+import com.microchip.mplab.nbide.embedded.arduino.importer.DependencyCache;
+import com.microchip.mplab.nbide.embedded.arduino.importer.LibCoreCache;
+import com.microchip.mplab.nbide.embedded.arduino.importer.LibraryIndex;
+import com.microchip.mplab.nbide.embedded.arduino.importer.ObjectCache;
+import com.microchip.mplab.nbide.embedded.arduino.importer.PreprocessCache;
 import com.microchip.mplab.nbide.embedded.arduino.importer.ProjectImporter;
 import com.microchip.mplab.nbide.embedded.arduino.importer.GCCToolFinder;
 import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
@@ -58,6 +63,7 @@ import org.openide.WizardDescriptor;
 import org.openide.filesystems.FileObject;
 import org.openide.filesystems.FileUtil;
 import org.openide.modules.InstalledFileLocator;
+import org.openide.modules.Places;
 import org.openide.util.Exceptions;
 import static com.microchip.mplab.nbide.embedded.arduino.importer.ProjectImporter.IMPORTED_PROPERTIES_FILENAME;
 import com.microchip.mplab.nbide.embedded.arduino.importer.Board;
@@ -73,6 +79,11 @@ public class ImportWorker extends SwingWorker<Set<FileObject>, String> {
     
     private static final String DEFAULT_CONF_NAME = "default";
     private static final String DEBUG_CONF_NAME = "debug";
+    private static final String DEPENDENCY_CACHE_DIR_NAME = "arduino-importer/dependencies";
+    private static final String LIB_CORE_CACHE_DIR_NAME = "arduino-importer/cores";
+    private static final String LIBRARY_INDEX_FILE_PATH = "arduino-importer/libraries.idx";
+    private static final String PREPROCESS_CACHE_DIR_NAME = "arduino-importer/preprocess";
+    private static final String OBJECT_CACHE_DIR_NAME = "arduino-importer/objects";
     
     private Exception exception;
     private final WizardDescriptor wizardDescriptor;
@@ -249,6 +260,10 @@ public class ImportWorker extends SwingWorker<Set<FileObject>, String> {
         ArduinoBuilderRunner arduinoBuilderRunner = new ArduinoBuilderRunner(
             toolFinder, arduinoPathResolver, arduinoInstallDir.toPath(), (m) -> LOGGER.info(m)
         );
+        arduinoBuilderRunner.setDependencyCache( new DependencyCache( Places.getCacheSubdirectory(DEPENDENCY_CACHE_DIR_NAME).toPath() ) );
+        arduinoBuilderRunner.setDependencyResolutionMode( ArduinoBuilderRunner.DependencyResolutionMode.INCLUDE_SCANNER );
+        arduinoBuilderRunner.setPreprocessCache( new PreprocessCache( Places.getCacheSubdirectory(PREPROCESS_CACHE_DIR_NAME).toPath() ) );
+        arduinoBuilderRunner.setLibraryIndex( new LibraryIndex( Places.getCacheDirectory().toPath().resolve(LIBRARY_INDEX_FILE_PATH) ) );
         
         BootloaderPathProvider bootloaderPathProvider = new BootloaderPathProvider( (filename) -> {
             File hexFile = InstalledFileLocator.getDefault().locate("bootloaders/" + filename, "com.microchip.mplab.nbide.embedded.arduino", false);
@@ -266,6 +281,8 @@ public class ImportWorker extends SwingWorker<Set<FileObject>, String> {
         importer.setArduinoBuilderRunner(arduinoBuilderRunner);
         importer.setBootloaderPathProvider(bootloaderPathProvider);
         importer.setCustomLdScriptsPath(customLdScriptsDirectoryPath);
+        importer.setLibCoreCache( new LibCoreCache( Places.getCacheSubdirectory(LIB_CORE_CACHE_DIR_NAME).toPath() ) );
+        importer.setObjectCache( new ObjectCache( Places.getCacheSubdirectory(OBJECT_CACHE_DIR_NAME).toPath() ) );
         importer.execute();
 
         // This will be used to display either the short "how-to" guide or the longer one:
@@ -338,7 +355,8 @@ public class ImportWorker extends SwingWorker<Set<FileObject>, String> {
                 addFileToFolder(generatedFolder, p, importer.getPreprocessedSketchDirectoryPath());
             });
 
-            final String arduinoBuilderCommand = importer.getPreprocessingCommand() + " > preprocess.log";  // Redirecting Arduino Builder output to a log file
+            // Arduino Builder runs only if the sketch has changed. Its output is redirected to a log file:
+            final String arduinoBuilderCommand = importer.getPreprocessingStepCommand();
             
             newProjectDescriptor.getConfs().getConfigurtions().forEach( c -> {
                 MakeConfiguration mc = (MakeConfiguration) c;                
@@ -55,6 +55,7 @@ import static com.microchip.mplab.nbide.embedded.arduino.wizard.ImportWizardProp
 import static com.microchip.mplab.nbide.embedded.arduino.importer.Requirements.MINIMUM_ARDUINO_VERSION;
 import com.microchip.mplab.nbide.embedded.arduino.importer.Board;
 import com.microchip.mplab.nbide.embedded.arduino.importer.BoardConfiguration;
+import com.microchip.mplab.nbide.embedded.arduino.importer.PlatformChangeEvent;
 import com.microchip.mplab.nbide.embedded.arduino.importer.PlatformFactory;
 import com.microchip.mplab.nbide.embedded.arduino.utils.ArduinoProjectFileFilter;
 import java.awt.event.FocusEvent;
@@ -64,11 +65,16 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxModel;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JComboBox;
+import javax.swing.SwingUtilities;
 import javax.swing.filechooser.FileFilter;
 import org.openide.util.Exceptions;
 
@@ -78,6 +84,7 @@ public class ProjectSetupStep implements WizardDescriptor.Panel<WizardDescriptor
 
     
     private static final String MAKEFILE_NAME = "Makefile";   // NOI18N
+    private static final Comparator<Platform> PLATFORM_COMPARATOR = (Platform p1, Platform p2) -> p1.getDisplayName().orElse("").compareTo(p2.getDisplayName().orElse(""));
     
     private final Set<ChangeListener> listeners = new HashSet<>();
     private Map<String, String> boardIdLookup = new HashMap<>();
@@ -103,9 +110,12 @@ public class ProjectSetupStep implements WizardDescriptor.Panel<WizardDescriptor
         if (view == null) {
             view = new ProjectSetupPanel(this);
             try {
+                // Registered first so that no change found by the background refresh of the platform index is missed:
+                platformFactory.addPlatformChangeListener( e -> SwingUtilities.invokeLater( () -> onPlatformInstallationChanged(e) ) );
                 allPlatforms = new ArrayList<>(platformFactory.getAllPlatforms(arduinoConfig.getSettingsPath()));
-                Collections.sort(allPlatforms, (Platform p1, Platform p2) -> p1.getDisplayName().orElse("").compareTo(p2.getDisplayName().orElse("")));
+                Collections.sort(allPlatforms, PLATFORM_COMPARATOR);
                 view.platformCombo.setModel( new PlatformComboModel(allPlatforms) );
+                platformFactory.startWatching();
             } catch (IOException ex) {
                 Exceptions.printStackTrace(ex);
             }
@@ -667,6 +677,63 @@ public class ProjectSetupStep implements WizardDescriptor.Panel<WizardDescriptor
         fireChangeEvent();
     }
     
+    // Called when a platform is installed, updated or removed while the wizard is open
+    private void onPlatformInstallationChanged( PlatformChangeEvent event ) {
+        PlatformComboModel model = (PlatformComboModel) view.platformCombo.getModel();
+        Platform oldPlatform = event.getOldPlatform();
+        Platform newPlatform = event.getNewPlatform();
+        // The change may already be part of the list that the combo was filled with. Platforms are compared 
+        // by identity because an updated platform equals the one it replaces:
+        if ( (newPlatform != null && containsInstance(newPlatform)) || (newPlatform == null && !containsInstance(oldPlatform)) ) {
+            return;
+        }
+        if ( oldPlatform != null ) {
+            allPlatforms.remove( oldPlatform );
+        }
+        if ( newPlatform != null ) {
+            allPlatforms.add( newPlatform );
+            Collections.sort(allPlatforms, PLATFORM_COMPARATOR);
+        }
+        if ( oldPlatform != null && newPlatform != null ) {
+            model.replacePlatform( oldPlatform, newPlatform );
+            // Never import against stale board data:
+            if ( oldPlatform.equals(currentPlatform) ) {
+                selectPlatform( newPlatform );
+            }
+        } else if ( newPlatform != null ) {
+            model.insertPlatform( newPlatform, allPlatforms.indexOf(newPlatform) );
+        } else {
+            model.removePlatform( oldPlatform );
+            if ( oldPlatform.equals(currentPlatform) ) {
+                // Fall back to another installation of the same platform or to the first one in the list:
+                Platform replacement = allPlatforms.stream()
+                    .filter( p -> p.getVendor().equalsIgnoreCase(oldPlatform.getVendor()) && p.getArchitecture().equalsIgnoreCase(oldPlatform.getArchitecture()) )
+                    .findFirst()
+                    .orElse( allPlatforms.isEmpty() ? null : allPlatforms.get(0) );
+                selectPlatform( replacement );
+            }
+        }
+    }
+    
+    private void selectPlatform( Platform platform ) {
+        currentPlatform = platform;
+        // The following steps read the platform from the wizard properties:
+        if ( wizardDescriptor != null ) {
+            wizardDescriptor.putProperty( ARDUINO_PLATFORM.key(), currentPlatform );
+        }
+        view.platformCombo.setSelectedItem( currentPlatform );
+        if ( currentPlatform != null ) {
+            onPlatformChanged();
+        } else {
+            board = null;
+            fireChangeEvent();
+        }
+    }
+    
+    private boolean containsInstance( Platform platform ) {
+        return allPlatforms.stream().anyMatch( p -> p == platform );
+    }
+    
     private void checkForExistingProject() {
         //if project already exists, enable the check box
         if ("".equalsIgnoreCase(view.projectNameField.getText().trim())) {
@@ -752,10 +819,66 @@ public class ProjectSetupStep implements WizardDescriptor.Panel<WizardDescriptor
         loadBoardsToCombo();
     }
 
-    private static class PlatformComboModel extends DefaultComboBoxModel<Platform> {
+    private static class PlatformComboModel extends AbstractListModel<Platform> implements ComboBoxModel<Platform> {
+        
+        private final List<Platform> platforms;
+        private Object selectedItem;
+        
         PlatformComboModel( List<Platform> platforms ) {
-            super( platforms.toArray( new Platform[platforms.size()] ) );
-        }        
+            this.platforms = new ArrayList<>( platforms );
+        }
+
+        @Override
+        public int getSize() {
+            return platforms.size();
+        }
+
+        @Override
+        public Platform getElementAt(int index) {
+            return platforms.get(index);
+        }
+
+        @Override
+        public void setSelectedItem(Object item) {
+            if ( !Objects.equals(selectedItem, item) ) {
+                selectedItem = item;
+                fireContentsChanged(this, -1, -1);
+            }
+        }
+
+        @Override
+        public Object getSelectedItem() {
+            return selectedItem;
+        }
+        
+        void replacePlatform( Platform oldPlatform, Platform newPlatform ) {
+            int index = platforms.indexOf(oldPlatform);
+            if ( index != -1 ) {
+                platforms.set(index, newPlatform);
+                if ( oldPlatform.equals(selectedItem) ) {
+                    selectedItem = newPlatform;
+                }
+                fireContentsChanged(this, index, index);
+            }
+        }
+        
+        void insertPlatform( Platform platform, int index ) {
+            index = Math.max( 0, Math.min(index, platforms.size()) );
+            platforms.add(index, platform);
+            fireIntervalAdded(this, index, index);
+        }
+        
+        void removePlatform( Platform platform ) {
+            int index = platforms.indexOf(platform);
+            if ( index != -1 ) {
+                platforms.remove(index);
+                if ( platform.equals(selectedItem) ) {
+                    selectedItem = null;
+                }
+                fireIntervalRemoved(this, index, index);
+            }
+        }
+        
     }
     
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ArduinoBuilderRunnerTest {
+
+
+    private static final int LIBRARY_COUNT = 40;
+    
+    private Path tempDirPath;
+    private Path librariesDirPath;
+    private BoardConfiguration boardConfiguration;
+    private GCCToolFinder toolFinder;
+    private LibraryIndex libraryIndex;
+
+
+    @Before
+    public void setUp() throws IOException {
+        tempDirPath = Files.createTempDirectory("arduino-builder-runner-test");
+        Path coreDirPath = Files.createDirectories( tempDirPath.resolve("cores/arduino") );
+        Files.write( coreDirPath.resolve("Arduino.h"), Arrays.asList("#pragma once") );
+        Path toolsDirPath = Files.createDirectories( tempDirPath.resolve("tools") );
+        Files.createFile( toolsDirPath.resolve("avr-g++") );
+        toolFinder = new GCCToolFinder( toolsDirPath );
+        
+        Platform platform = new Platform( null, "arduino", "avr", tempDirPath, new HashMap<>() );
+        Board board = new Board( platform, "uno", new HashMap<>(), Collections.emptyMap() );
+        boardConfiguration = new BoardConfiguration( board );
+        boardConfiguration.putValue( "build.core.path", coreDirPath.toString() );
+        
+        // Every library includes a few libraries with higher numbers, so the closure spans several waves:
+        librariesDirPath = Files.createDirectories( tempDirPath.resolve("libraries") );
+        Random random = new Random(42);
+        for ( int i=0; i<LIBRARY_COUNT; i++ ) {
+            Path libraryDirPath = Files.createDirectories( librariesDirPath.resolve( "Lib" + i ) );
+            Files.write( libraryDirPath.resolve( "Lib" + i + ".h" ), Arrays.asList("#pragma once", "#include <Arduino.h>") );
+            for ( int j=0; j<3; j++ ) {
+                List <String> lines = new ArrayList<>();
+                lines.add( "#include \"Lib" + i + ".h\"" );
+                if ( i+1 < LIBRARY_COUNT && random.nextInt(3) == 0 ) {
+                    lines.add( "#include <Lib" + (i + 1 + random.nextInt( LIBRARY_COUNT - i - 1 )) + ".h>" );
+                }
+                Files.write( libraryDirPath.resolve( "Source" + j + ".cpp" ), lines );
+            }
+        }
+        
+        libraryIndex = new LibraryIndex( tempDirPath.resolve("libraries.idx") );
+        Map <LibraryIndex.Location,Path> librariesDirPaths = new EnumMap<>(LibraryIndex.Location.class);
+        librariesDirPaths.put( LibraryIndex.Location.SKETCHBOOK, librariesDirPath );
+        libraryIndex.refresh( librariesDirPaths );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walkFileTree( tempDirPath, new DeletingFileVisitor() );
+    }
+
+    @Test
+    public void parallelResolutionFindsTheSameLibrariesAsSerialResolution() throws Exception {
+        List <Path> mainLibraryPaths = Arrays.asList( librariesDirPath.resolve("Lib0"), librariesDirPath.resolve("Lib1") );
+        
+        List <Path> serialLibraryPaths = createRunner(1).findAuxLibraryPaths( boardConfiguration, toolFinder, mainLibraryPaths );
+        List <Path> parallelLibraryPaths = createRunner(8).findAuxLibraryPaths( boardConfiguration, toolFinder, mainLibraryPaths );
+        
+        assertFalse( "The test libraries should depend on each other", serialLibraryPaths.isEmpty() );
+        // The results are merged in submission order, so even the order is the same:
+        assertEquals( serialLibraryPaths, parallelLibraryPaths );
+    }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private ArduinoBuilderRunner createRunner( int threadCount ) {
+        ArduinoBuilderRunner ret = new ArduinoBuilderRunner( toolFinder, null, tempDirPath, m -> {} );
+        ret.setDependencyResolutionMode( ArduinoBuilderRunner.DependencyResolutionMode.INCLUDE_SCANNER );
+        ret.setDependencyResolutionThreadCount( threadCount );
+        ret.setLibraryIndex( libraryIndex );
+        return ret;
+    }
+    
+}
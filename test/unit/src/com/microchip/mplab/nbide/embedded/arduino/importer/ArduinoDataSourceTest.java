@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ArduinoDataSourceTest {
+
+
+    private ArduinoDataSource platform;
+    private ArduinoDataSource board;
+
+
+    @Before
+    public void setUp() {
+        Map <String,String> platformData = new HashMap<>();
+        platformData.put( "compiler.path", "{runtime.tools.gcc.path}/bin/" );
+        platformData.put( "compiler.flags", "-c -Os -mmcu={build.mcu}" );
+        platformData.put( "recipe.c.o.pattern", "\"{compiler.path}gcc\" {compiler.flags} \"{source_file}\"" );
+        platform = new ArduinoDataSource( null, platformData ) {};
+        
+        Map <String,String> boardData = new HashMap<>();
+        boardData.put( "build.mcu", "atmega328p" );
+        boardData.put( "runtime.tools.gcc.path", "/tools" );
+        board = new ArduinoDataSource( platform, boardData ) {};
+    }
+
+    @Test
+    public void returnsTheSameValueWhenResolvedAgain() {
+        String expected = "\"/tools/bin/gcc\" -c -Os -mmcu=atmega328p \"{source_file}\"";
+        
+        assertEquals( Optional.of(expected), board.getValue("recipe.c.o.pattern") );
+        assertEquals( Optional.of(expected), board.getValue("recipe.c.o.pattern") );
+    }
+
+    @Test
+    public void resolvesKeysReferringToRuntimeDataAgain() {
+        board.getValue("recipe.c.o.pattern");
+        Map <String,String> runtimeData = Collections.singletonMap( "build.mcu", "atmega2560" );
+        
+        assertEquals( Optional.of("-c -Os -mmcu=atmega2560"), board.getValue( "compiler.flags", runtimeData ) );
+        assertEquals( Optional.of("/tools/bin/"), board.getValue( "compiler.path", runtimeData ) );
+        assertEquals( Optional.of("-c -Os -mmcu=atmega328p"), board.getValue("compiler.flags") );
+    }
+
+    @Test
+    public void discardsResolvedValuesWhenParentIsModified() {
+        board.getValue("compiler.flags");
+        platform.putValue( "compiler.flags", "-c -O2 -mmcu={build.mcu}" );
+        
+        assertEquals( Optional.of("-c -O2 -mmcu=atmega328p"), board.getValue("compiler.flags") );
+    }
+
+    @Test
+    public void leavesCyclicReferencesUnresolved() {
+        board.putValue( "a", "{b}" );
+        board.putValue( "b", "{a}" );
+        
+        assertEquals( Optional.of("{a}"), board.getValue("a") );
+    }
+    
+}
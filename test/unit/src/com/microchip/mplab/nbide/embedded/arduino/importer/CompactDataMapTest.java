@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CompactDataMapTest {
+
+
+    @Test
+    public void behavesLikeTheMapItWasCreatedFrom() {
+        Map <String,String> data = new HashMap<>();
+        data.put( "name", "Arduino AVR Boards" );
+        data.put( "compiler.cpp.flags", "-c -g -Os -w -std=gnu++11" );
+        data.put( "compiler.c.flags", "-c -g -Os -w -std=gnu11" );
+        data.put( "recipe.hooks.prebuild.1.pattern", "" );
+        data.put( "uno.build.mcu", "atmega328p" );
+        
+        CompactDataMap map = CompactDataMap.of( data );
+        
+        assertEquals( data, map );
+        assertEquals( map, data );
+        assertEquals( data.hashCode(), map.hashCode() );
+        assertEquals( data.size(), map.size() );
+        for ( Map.Entry<String,String> e : data.entrySet() ) {
+            assertTrue( map.containsKey( e.getKey() ) );
+            assertEquals( e.getValue(), map.get( e.getKey() ) );
+        }
+        assertNull( map.get("missing.key") );
+        assertNull( map.get( Integer.valueOf(1) ) );
+        assertFalse( map.containsKey("missing.key") );
+    }
+
+    @Test
+    public void iteratesInKeyOrder() {
+        Map <String,String> data = new HashMap<>();
+        for ( int i=0; i<100; i++ ) {
+            data.put( "key." + i, "value." + (i % 7) );
+        }
+        
+        Map <String,String> iterated = new TreeMap<>();
+        StringBuilder keys = new StringBuilder();
+        CompactDataMap.of( data ).forEach( (k,v) -> {
+            keys.append(k).append(',');
+            iterated.put(k, v);
+        });
+        
+        StringBuilder expectedKeys = new StringBuilder();
+        new TreeMap<>( data ).keySet().forEach( k -> expectedKeys.append(k).append(',') );
+        assertEquals( expectedKeys.toString(), keys.toString() );
+        assertEquals( data, iterated );
+        assertEquals( new TreeMap<>( data ).entrySet().toString(), CompactDataMap.of( data ).entrySet().toString() );
+    }
+
+    @Test
+    public void sharesInternedStrings() {
+        Map <String,String> first = Collections.singletonMap( new String("build.board"), new String("AVR_UNO") );
+        Map <String,String> second = Collections.singletonMap( new String("build.board"), new String("AVR_UNO") );
+        
+        Map.Entry<String,String> firstEntry = CompactDataMap.of( first ).entrySet().iterator().next();
+        Map.Entry<String,String> secondEntry = CompactDataMap.of( second ).entrySet().iterator().next();
+        
+        assertSame( firstEntry.getKey(), secondEntry.getKey() );
+        assertSame( firstEntry.getValue(), secondEntry.getValue() );
+    }
+
+    @Test
+    public void returnsCompactMapsUnchanged() {
+        CompactDataMap map = CompactDataMap.of( Collections.singletonMap("a", "b") );
+        
+        assertSame( map, CompactDataMap.of( map ) );
+        assertTrue( CompactDataMap.of( Collections.emptyMap() ).isEmpty() );
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNullValues() {
+        CompactDataMap.of( Collections.singletonMap("a", null) );
+    }
+
+}
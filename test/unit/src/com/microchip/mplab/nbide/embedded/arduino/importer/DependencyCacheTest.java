@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DependencyCacheTest {
+
+
+    private Path tempDirPath;
+    private DependencyCache cache;
+    private Path sourceFilePath;
+    private Path headerFilePath;
+    private String key;
+
+
+    @Before
+    public void setUp() throws IOException {
+        tempDirPath = Files.createTempDirectory("dependency-cache-test");
+        cache = new DependencyCache( tempDirPath.resolve("cache") );
+        sourceFilePath = Files.write( tempDirPath.resolve("Source.cpp"), Arrays.asList("#include \"Header.h\"") );
+        headerFilePath = Files.write( tempDirPath.resolve("Header.h"), Arrays.asList("#pragma once") );
+        key = cache.createKey( sourceFilePath, "avr-g++", "-MM" );
+        cache.put( key, Arrays.asList( sourceFilePath, headerFilePath ) );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walkFileTree( tempDirPath, new DeletingFileVisitor() );
+    }
+
+    @Test
+    public void returnsStoredDependencies() {
+        assertEquals( Arrays.asList( sourceFilePath, headerFilePath ), cache.get( key ).get() );
+    }
+
+    @Test
+    public void rejectsEntryWhenHeaderChanges() throws IOException {
+        FileTime lastModifiedTime = Files.getLastModifiedTime( headerFilePath );
+        Files.write( headerFilePath, Arrays.asList("#pragma once", "#include \"Other.h\"") );
+        Files.setLastModifiedTime( headerFilePath, lastModifiedTime );
+        
+        assertFalse( cache.get( key ).isPresent() );
+    }
+
+    @Test
+    public void rejectsEntryWhenHeaderIsTouched() throws IOException {
+        Files.setLastModifiedTime( headerFilePath, FileTime.fromMillis( Files.getLastModifiedTime( headerFilePath ).toMillis() - 60000 ) );
+        
+        assertFalse( cache.get( key ).isPresent() );
+    }
+
+    @Test
+    public void rejectsEntryWhenHeaderIsDeleted() throws IOException {
+        Files.delete( headerFilePath );
+        
+        assertFalse( cache.get( key ).isPresent() );
+    }
+
+    @Test
+    public void keyChangesWithSourceContents() throws IOException {
+        Files.write( sourceFilePath, Arrays.asList("#include <Other.h>") );
+        
+        assertNotEquals( key, cache.createKey( sourceFilePath, "avr-g++", "-MM" ) );
+    }
+
+}
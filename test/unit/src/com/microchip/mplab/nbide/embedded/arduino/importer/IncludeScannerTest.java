@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IncludeScannerTest {
+
+
+    private Path tempDirPath;
+    private Path coreDirPath;
+    private Path libraryDirPath;
+    private IncludeScanner scanner;
+
+
+    @Before
+    public void setUp() throws IOException {
+        tempDirPath = Files.createTempDirectory("include-scanner-test");
+        coreDirPath = Files.createDirectories( tempDirPath.resolve("core") );
+        libraryDirPath = Files.createDirectories( tempDirPath.resolve("Lib") );
+        write( coreDirPath.resolve("Arduino.h"), "#pragma once" );
+        write( libraryDirPath.resolve("Lib.h"), "#pragma once" );
+        scanner = new IncludeScanner( Collections.singletonList(coreDirPath), Arrays.asList(coreDirPath, libraryDirPath) );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walkFileTree( tempDirPath, new DeletingFileVisitor() );
+    }
+
+    @Test
+    public void followsIncludesInsideIncludeGuards() throws IOException {
+        Path headerPath = write( tempDirPath.resolve("Guarded.h"),
+            "#ifndef GUARDED_H",
+            "#define GUARDED_H",
+            "#include <Lib.h>",
+            "#endif"
+        );
+        Path sourcePath = write( tempDirPath.resolve("Source.cpp"), "#include \"Guarded.h\"" );
+        
+        assertEquals( Optional.of( Arrays.asList( headerPath, libraryDirPath.resolve("Lib.h") ) ), scanner.scan( sourcePath ) );
+    }
+
+    @Test
+    public void treatsDefaultValueDefinitionAsConditional() throws IOException {
+        Path sourcePath = write( tempDirPath.resolve("Source.cpp"),
+            "#ifndef BUF_SIZE",
+            "#define BUF_SIZE 64",
+            "#include <Lib.h>",
+            "#endif"
+        );
+        
+        assertFalse( scanner.scan( sourcePath ).isPresent() );
+    }
+
+    @Test
+    public void followsConditionalIncludesOfCoreHeaders() throws IOException {
+        Path sourcePath = write( tempDirPath.resolve("Source.cpp"),
+            "#ifdef ARDUINO",
+            "#include <Arduino.h>",
+            "#endif"
+        );
+        
+        assertEquals( Optional.of( Collections.singletonList( coreDirPath.resolve("Arduino.h") ) ), scanner.scan( sourcePath ) );
+    }
+
+    @Test
+    public void skipsDisabledBlocks() throws IOException {
+        Path sourcePath = write( tempDirPath.resolve("Source.cpp"),
+            "#if 0",
+            "#include <Lib.h>",
+            "#elif 1",
+            "#include <Arduino.h>",
+            "#else",
+            "#include <Lib.h>",
+            "#endif",
+            "/* #include <Lib.h> */"
+        );
+        
+        assertEquals( Optional.of( Collections.singletonList( coreDirPath.resolve("Arduino.h") ) ), scanner.scan( sourcePath ) );
+    }
+
+    @Test
+    public void givesUpOnComputedIncludes() throws IOException {
+        Path sourcePath = write( tempDirPath.resolve("Source.cpp"), "#include HEADER_NAME" );
+        
+        assertFalse( scanner.scan( sourcePath ).isPresent() );
+    }
+
+    @Test
+    public void givesUpOnUnresolvedIncludesIfSystemDirectoriesAreGiven() throws IOException {
+        Path systemDirPath = Files.createDirectories( tempDirPath.resolve("system") );
+        IncludeScanner strictScanner = new IncludeScanner( Collections.singletonList(coreDirPath), Collections.singletonList(coreDirPath), Collections.singletonList(systemDirPath) );
+        Path sourcePath = write( tempDirPath.resolve("Source.cpp"),
+            "#ifdef HAVE_MISSING",
+            "#include <Missing.h>",
+            "#endif"
+        );
+        
+        assertTrue( scanner.scan( sourcePath ).isPresent() );
+        assertFalse( strictScanner.scan( sourcePath ).isPresent() );
+    }
+
+    @Test
+    public void followsNextIncludesOfSystemHeaders() throws IOException {
+        Path wrapperDirPath = Files.createDirectories( tempDirPath.resolve("system/wrapper") );
+        Path libcDirPath = Files.createDirectories( tempDirPath.resolve("system/libc") );
+        Path wrapperPath = write( wrapperDirPath.resolve("stdio.h"), "#include_next <stdio.h>", "#ifdef __OTHER_HOST__", "#include <other/host.h>", "#endif" );
+        Path libcPath = write( libcDirPath.resolve("stdio.h"), "#pragma once" );
+        IncludeScanner strictScanner = new IncludeScanner( Collections.singletonList(coreDirPath), Collections.singletonList(coreDirPath), Arrays.asList(wrapperDirPath, libcDirPath) );
+        Path sourcePath = write( tempDirPath.resolve("Source.cpp"), "#include <stdio.h>" );
+        
+        assertEquals( Optional.of( Arrays.asList( wrapperPath, libcPath ) ), strictScanner.scan( sourcePath ) );
+    }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private static Path write( Path filePath, String... lines ) throws IOException {
+        return Files.write( filePath, Arrays.asList(lines) );
+    }
+    
+}
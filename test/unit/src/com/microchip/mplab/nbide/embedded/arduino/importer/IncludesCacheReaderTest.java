@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class IncludesCacheReaderTest {
+
+
+    @Test
+    public void readsSourcefileAndIncludepathOfEveryEntry() throws IOException {
+        String json = "[\n"
+            + "  {\n"
+            + "    \"Sourcefile\": null,\n"
+            + "    \"Include\": \"\",\n"
+            + "    \"Includepath\": \"/arduino/hardware/arduino/avr/cores/arduino\"\n"
+            + "  },\n"
+            + "  {\n"
+            + "    \"Sourcefile\": \"/tmp/build/sketch/Blink.ino.cpp\",\n"
+            + "    \"Include\": \"SPI.h\",\n"
+            + "    \"Includepath\": \"/arduino/hardware/arduino/avr/libraries/SPI/src\",\n"
+            + "    \"Extra\": { \"Flags\": [ 1, true, \"x\" ], \"Empty\": {} }\n"
+            + "  }\n"
+            + "]\n";
+        
+        List <String> sourcefiles = new ArrayList<>();
+        List <String> includepaths = new ArrayList<>();
+        try ( IncludesCacheReader reader = new IncludesCacheReader( new StringReader(json) ) ) {
+            while ( reader.next() ) {
+                sourcefiles.add( reader.getSourcefile() );
+                includepaths.add( reader.getIncludepath() );
+            }
+        }
+        
+        assertEquals( Arrays.asList( null, "/tmp/build/sketch/Blink.ino.cpp" ), sourcefiles );
+        assertEquals( Arrays.asList( "/arduino/hardware/arduino/avr/cores/arduino", "/arduino/hardware/arduino/avr/libraries/SPI/src" ), includepaths );
+    }
+
+    @Test
+    public void unescapesStrings() throws IOException {
+        String json = "[{\"Includepath\":\"C:\\\\Arduino\\\\libraries\\\\Servo\\/src\\u00e9\"}]";
+        
+        try ( IncludesCacheReader reader = new IncludesCacheReader( new StringReader(json) ) ) {
+            assertTrue( reader.next() );
+            assertEquals( "C:\\Arduino\\libraries\\Servo/src\u00e9", reader.getIncludepath() );
+            assertFalse( reader.next() );
+        }
+    }
+
+    @Test
+    public void readsNullAndEmptyArrayAsNoEntries() throws IOException {
+        for ( String json : Arrays.asList( "null", " [ ] " ) ) {
+            try ( IncludesCacheReader reader = new IncludesCacheReader( new StringReader(json) ) ) {
+                assertFalse( reader.next() );
+                assertFalse( reader.next() );
+            }
+        }
+    }
+
+    @Test
+    public void readsEntriesLongerThanTheBuffer() throws IOException {
+        StringBuilder includepath = new StringBuilder();
+        for ( int i=0; i<3000; i++ ) {
+            includepath.append("/dir").append(i);
+        }
+        String json = "[{\"Includepath\":\"" + includepath + "\"},{\"Includepath\":\"/last\"}]";
+        
+        try ( IncludesCacheReader reader = new IncludesCacheReader( new StringReader(json) ) ) {
+            assertTrue( reader.next() );
+            assertEquals( includepath.toString(), reader.getIncludepath() );
+            assertTrue( reader.next() );
+            assertEquals( "/last", reader.getIncludepath() );
+            assertFalse( reader.next() );
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFile() throws IOException {
+        try ( IncludesCacheReader reader = new IncludesCacheReader( new StringReader("[{\"Includepath\":\"/a") ) ) {
+            reader.next();
+        }
+    }
+
+}
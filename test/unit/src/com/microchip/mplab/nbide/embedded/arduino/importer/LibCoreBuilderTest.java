@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Builds a small core with the GCC toolchain of the host. Skipped if there is none.
+ */
+public class LibCoreBuilderTest {
+
+
+    private Path tempDirPath;
+    private Path coreDirPath;
+    private GCCToolFinder toolFinder;
+    private ObjectCache objectCache;
+
+
+    @Before
+    public void setUp() throws IOException {
+        Path gccPath = Paths.get("/usr/bin/gcc");
+        Path gppPath = Paths.get("/usr/bin/g++");
+        Path arPath = Paths.get("/usr/bin/ar");
+        Assume.assumeTrue( Files.isExecutable(gccPath) && Files.isExecutable(gppPath) && Files.isExecutable(arPath) );
+        
+        tempDirPath = Files.createTempDirectory("lib-core-builder-test");
+        // The tool finder and the recipes expect a cross toolchain with prefixed tool names:
+        Path toolsBinDirPath = Files.createDirectories( tempDirPath.resolve("toolchain/bin") );
+        Files.createSymbolicLink( toolsBinDirPath.resolve("test-gcc"), gccPath.toRealPath() );
+        Files.createSymbolicLink( toolsBinDirPath.resolve("test-g++"), gppPath.toRealPath() );
+        Files.createSymbolicLink( toolsBinDirPath.resolve("test-ar"), arPath.toRealPath() );
+        toolFinder = new GCCToolFinder( toolsBinDirPath );
+        
+        coreDirPath = Files.createDirectories( tempDirPath.resolve("platform/cores/test") );
+        Path variantDirPath = Files.createDirectories( tempDirPath.resolve("platform/variants/standard") );
+        write( variantDirPath.resolve("pins.h"), "#pragma once", "#define PIN_COUNT 20" );
+        write( coreDirPath.resolve("Core.h"), "#pragma once", "#include <string.h>", "#include \"pins.h\"", "int coreValue(void);" );
+        write( coreDirPath.resolve("core.c"), "#include \"Core.h\"", "int coreValue(void) { return (int) strlen(\"core\"); }" );
+        write( coreDirPath.resolve("Print.cpp"), "#include \"Core.h\"", "int printValue() { return coreValue() + 1; }" );
+        
+        objectCache = new ObjectCache( tempDirPath.resolve("objects") );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if ( tempDirPath != null ) {
+            Files.walkFileTree( tempDirPath, new DeletingFileVisitor() );
+        }
+    }
+
+    @Test
+    public void sharesObjectsWithoutDebugInformationBetweenBuildDirectories() throws Exception {
+        BoardConfiguration boardConfiguration = createBoardConfiguration("-g0");
+        
+        LibCoreBuilder firstBuilder = build( boardConfiguration, "first" );
+        LibCoreBuilder secondBuilder = build( boardConfiguration, "second" );
+        
+        assertEquals( 2, firstBuilder.getObjectCacheMissCount() );
+        assertEquals( 2, secondBuilder.getObjectCacheHitCount() );
+        assertTrue( Files.exists( secondBuilder.getLibCorePath() ) );
+    }
+
+    @Test
+    public void reusesObjectsWithDebugInformationInTheSameBuildDirectoryOnly() throws Exception {
+        BoardConfiguration boardConfiguration = createBoardConfiguration("-g");
+        
+        build( boardConfiguration, "first" );
+        LibCoreBuilder secondBuilder = build( boardConfiguration, "second" );
+        Files.walkFileTree( tempDirPath.resolve("first"), new DeletingFileVisitor() );
+        LibCoreBuilder rebuilder = build( boardConfiguration, "first" );
+        
+        assertEquals( 0, secondBuilder.getObjectCacheHitCount() );
+        assertEquals( 2, rebuilder.getObjectCacheHitCount() );
+    }
+
+    @Test
+    public void doesNotCacheFilesWithUnresolvedIncludes() throws Exception {
+        write( coreDirPath.resolve("core.c"), 
+            "#include \"Core.h\"", 
+            "#ifdef HAVE_BOARD_HEADER", 
+            "#include <board_header_that_does_not_exist.h>", 
+            "#endif", 
+            "int coreValue(void) { return (int) strlen(\"core\"); }" 
+        );
+        BoardConfiguration boardConfiguration = createBoardConfiguration("-g0");
+        
+        build( boardConfiguration, "first" );
+        LibCoreBuilder secondBuilder = build( boardConfiguration, "second" );
+        
+        assertEquals( 1, secondBuilder.getObjectCacheHitCount() );
+        assertEquals( 1, secondBuilder.getObjectCacheMissCount() );
+    }
+
+    @Test
+    public void fallsBackToPerFileBuildAndCachesItIfMergedFilesConflict() throws Exception {
+        write( coreDirPath.resolve("first.c"), "static int helper(void) { return 1; }", "int first(void) { return helper(); }" );
+        write( coreDirPath.resolve("second.c"), "static int helper(void) { return 2; }", "int second(void) { return helper(); }" );
+        BoardConfiguration boardConfiguration = createBoardConfiguration("-g0");
+        LibCoreCache libCoreCache = new LibCoreCache( tempDirPath.resolve("libraries") );
+        
+        LibCoreBuilder firstBuilder = buildUnity( boardConfiguration, "first", libCoreCache, Collections.emptySet() );
+        LibCoreBuilder secondBuilder = buildUnity( boardConfiguration, "second", libCoreCache, Collections.emptySet() );
+        
+        assertFalse( firstBuilder.hasUnitySourceFiles() );
+        assertTrue( Files.exists( firstBuilder.getLibCorePath() ) );
+        assertTrue( Files.exists( secondBuilder.getLibCorePath() ) );
+        // The library of the second build has been restored instead of compiling the files one by one:
+        try (Stream<Path> stream = Files.list( secondBuilder.getObjectDirPath() )) {
+            assertFalse( stream.anyMatch( p -> p.getFileName().toString().endsWith(".o") ) );
+        }
+    }
+
+    @Test
+    public void doesNotRetryFailuresOutsideOfMergedFiles() throws Exception {
+        write( coreDirPath.resolve("other.c"), "int other(void) { return 0; }" );
+        write( coreDirPath.resolve("broken.c"), "int broken(void) { return }" );
+        BoardConfiguration boardConfiguration = createBoardConfiguration("-g0");
+        
+        LibCoreBuilder builder = new LibCoreBuilder( null, tempDirPath.resolve("first") );
+        builder.setUnityBuildEnabled(true);
+        builder.setUnityBuildDenylist( Collections.singletonMap( "test", Collections.singleton("broken.c") ) );
+        try {
+            builder.build( boardConfiguration, toolFinder, m -> {} );
+            fail("The build should have failed");
+        } catch ( NativeProcessFailureException ex ) {
+            assertTrue( builder.hasUnitySourceFiles() );
+        }
+    }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private BoardConfiguration createBoardConfiguration( String debugOption ) {
+        Map <String,String> platformData = new HashMap<>();
+        String compiler = "\"{runtime.tools.avr-gcc.path}/bin/test-";
+        platformData.put( "compiler.flags", "-c " + debugOption + " -Os" );
+        platformData.put( "recipe.c.o.pattern", compiler + "gcc\" {compiler.flags} {includes} \"{source_file}\" -o \"{object_file}\"" );
+        platformData.put( "recipe.cpp.o.pattern", compiler + "g++\" {compiler.flags} {includes} \"{source_file}\" -o \"{object_file}\"" );
+        platformData.put( "recipe.ar.pattern", compiler + "ar\" rcs \"{archive_file_path}\" \"{object_file}\"" );
+        Platform platform = new Platform( null, "test", "avr", tempDirPath.resolve("platform"), platformData );
+        
+        Map <String,String> boardData = new HashMap<>();
+        boardData.put( "build.core", "test" );
+        boardData.put( "build.variant", "standard" );
+        Board board = new Board( platform, "test", boardData, Collections.emptyMap() );
+        return new BoardConfiguration( board );
+    }
+    
+    private LibCoreBuilder build( BoardConfiguration boardConfiguration, String outputDirName ) throws Exception {
+        LibCoreBuilder ret = new LibCoreBuilder( null, tempDirPath.resolve(outputDirName) );
+        ret.setObjectCache( objectCache );
+        ret.build( boardConfiguration, toolFinder, m -> {} );
+        return ret;
+    }
+    
+    private LibCoreBuilder buildUnity( BoardConfiguration boardConfiguration, String outputDirName, LibCoreCache libCoreCache, Set<String> denylist ) throws Exception {
+        LibCoreBuilder ret = new LibCoreBuilder( null, tempDirPath.resolve(outputDirName) );
+        ret.setUnityBuildEnabled(true);
+        ret.setUnityBatchCount(1);
+        ret.setUnityBuildDenylist( Collections.singletonMap( "test", denylist ) );
+        ret.setLibCoreCache( libCoreCache );
+        ret.build( boardConfiguration, toolFinder, m -> {} );
+        return ret;
+    }
+    
+    private static void write( Path filePath, String... lines ) throws IOException {
+        Files.write( filePath, Arrays.asList(lines) );
+    }
+    
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2017 Microchip Technology Inc. and its subsidiaries (Microchip). All rights reserved.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * You may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0 
+ * 
+ * Unless required by applicable law or agreed to in writing, 
+ * software distributed under the License is distributed on an "AS IS" BASIS, 
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. 
+ * See the License for the specific language governing permissions and limitations under the License.
+ */
+
+package com.microchip.mplab.nbide.embedded.arduino.importer;
+
+import com.microchip.mplab.nbide.embedded.arduino.utils.DeletingFileVisitor;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PlatformIndexTest {
+
+
+    private Path tempDirPath;
+    private Path settingsPath;
+    private PlatformIndex index;
+
+
+    @Before
+    public void setUp() throws IOException {
+        tempDirPath = Files.createTempDirectory("platform-index-test");
+        settingsPath = tempDirPath.resolve("arduino15");
+        index = new PlatformIndex( tempDirPath.resolve("index/platforms.idx") );
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.walkFileTree( tempDirPath, new DeletingFileVisitor() );
+    }
+
+    @Test
+    public void loadsSavedEntries() {
+        index.save( settingsPath, Collections.singletonList( createEntry("1.6.21") ) );
+        
+        List <PlatformIndex.Entry> entries = index.load( settingsPath ).get();
+        
+        assertEquals( 1, entries.size() );
+        PlatformIndex.Entry entry = entries.get(0);
+        assertEquals( settingsPath.resolve("packages/arduino/hardware/avr/1.6.21/platform.txt"), entry.getPlatformFilePath() );
+        assertEquals( "arduino", entry.getVendor() );
+        assertEquals( "avr", entry.getArchitecture() );
+        assertEquals( new PlatformIndex.FileStamp(120, 1000), entry.getPlatformFileStamp() );
+        assertEquals( Collections.singletonMap("name", "Arduino AVR Boards"), entry.getPlatformData() );
+        assertEquals( Collections.singletonMap("uno.name", "Arduino/Genuino Uno"), entry.getBoardsData() );
+    }
+
+    @Test
+    public void replacesSnapshotAfterLoading() {
+        index.save( settingsPath, Collections.singletonList( createEntry("1.6.21") ) );
+        assertTrue( index.load( settingsPath ).isPresent() );
+        
+        // A loaded snapshot must not keep the file open, otherwise the atomic move fails on Windows
+        index.save( settingsPath, Arrays.asList( createEntry("1.6.21"), createEntry("1.6.22") ) );
+        
+        assertEquals( 2, index.load( settingsPath ).get().size() );
+    }
+
+    @Test
+    public void ignoresSnapshotOfOtherSettingsDirectory() {
+        index.save( settingsPath, Collections.singletonList( createEntry("1.6.21") ) );
+        
+        assertFalse( index.load( tempDirPath.resolve("other") ).isPresent() );
+    }
+
+    @Test
+    public void ignoresCorruptedSnapshot() throws IOException {
+        index.save( settingsPath, Collections.singletonList( createEntry("1.6.21") ) );
+        byte[] bytes = Files.readAllBytes( index.getIndexFilePath() );
+        Files.write( index.getIndexFilePath(), Arrays.copyOf( bytes, bytes.length / 2 ) );
+        
+        assertFalse( index.load( settingsPath ).isPresent() );
+    }
+    
+    
+    //*************************************************
+    //*************** PRIVATE METHODS *****************
+    //*************************************************
+    private PlatformIndex.Entry createEntry( String version ) {
+        return new PlatformIndex.Entry(
+            settingsPath.resolve("packages/arduino/hardware/avr/" + version + "/platform.txt"), "arduino", "avr",
+            new PlatformIndex.FileStamp(120, 1000), Collections.singletonMap("name", "Arduino AVR Boards"),
+            new PlatformIndex.FileStamp(80, 2000), Collections.singletonMap("uno.name", "Arduino/Genuino Uno")
+        );
+    }
+    
+}